@@ -45,7 +45,7 @@ const FolderGrid: React.FC<FolderGridProps> = ({
     const [showUploadModal, setShowUploadModal] = useState(false);
     const [showCreateFolderModal, setShowCreateFolderModal] = useState(false);
     const [newFolderName, setNewFolderName] = useState("");
-    const [fileToUpload, setFileToUpload] = useState<File | null>(null);
+    const [filesToUpload, setFilesToUpload] = useState<File[]>([]);
     const [actionMessage, setActionMessage] = useState<{ type: 'success' | 'error', text: string } | null>(null);
     const [sortOrder, setSortOrder] = useState<string>("newest");
     // Domyślnie ustawiona wartość true powoduje, że zawartość folderu zawsze jest wyświetlana
@@ -476,48 +476,58 @@ const FolderGrid: React.FC<FolderGridProps> = ({
             });
     };
 
-    // funkcja przesyłania plików
+    // funkcja przesyłania plików - wszystkie wybrane pliki są wysyłane jednym żądaniem
     const uploadFile = () => {
-        if (!fileToUpload) {
-            setActionMessage({ type: 'error', text: 'Wybierz plik do przesłania' });
+        if (filesToUpload.length === 0) {
+            setActionMessage({ type: 'error', text: 'Wybierz pliki do przesłania' });
             return;
         }
 
         const formData = new FormData();
-        formData.append('file', fileToUpload);
+        filesToUpload.forEach(file => formData.append('files', file));
         formData.append('path', parentFolderId || '');
 
-        setActionMessage({ type: 'success', text: 'Przesyłanie pliku...' });
+        setActionMessage({ type: 'success', text: `Przesyłanie plików (${filesToUpload.length})...` });
 
         axiosInstance
-            .post('/nextcloud/upload', formData, {
+            .post('/nextcloud/upload-batch', formData, {
                 headers: {
                     'Content-Type': 'multipart/form-data'
                 }
             })
-            .then(() => {
-                // Dodaj przesłany plik do listy
-                const newFile: Folder = {
-                    name: fileToUpload.name,
-                    path: parentFolderId ? `${parentFolderId}/${fileToUpload.name}` : fileToUpload.name,
-                    isDirectory: false,
-                    contentType: fileToUpload.type,
-                    contentLength: fileToUpload.size,
-                    lastModified: new Date().toISOString(),
-                    canWrite: true,
-                    canDelete: true
-                };
+            .then(response => {
+                const results: { name: string; path: string; status: string }[] = response.data.results || [];
+                const uploadedNames = new Set(results.filter(result => result.status === 'uploaded').map(result => result.name));
+
+                // Dodaj przesłane pliki do listy (zastępując pliki o tych samych nazwach)
+                const newFiles: Folder[] = filesToUpload
+                    .filter(file => uploadedNames.has(file.name))
+                    .map(file => ({
+                        name: file.name,
+                        path: parentFolderId ? `${parentFolderId}/${file.name}` : file.name,
+                        isDirectory: false,
+                        contentType: file.type,
+                        contentLength: file.size,
+                        lastModified: new Date().toISOString(),
+                        canWrite: true,
+                        canDelete: true
+                    }));
 
-                setAllItems([...allItems, newFile]);
-                setItems(prev => [...prev, newFile]);
+                setAllItems([...allItems.filter(item => !uploadedNames.has(item.name)), ...newFiles]);
+                setItems(prev => [...prev.filter(item => !uploadedNames.has(item.name)), ...newFiles]);
 
-                setActionMessage({ type: 'success', text: 'Plik przesłany pomyślnie' });
+                const failed = results.length - uploadedNames.size;
+                if (failed > 0) {
+                    setActionMessage({ type: 'error', text: `Przesłano ${uploadedNames.size} z ${results.length} plików` });
+                } else {
+                    setActionMessage({ type: 'success', text: 'Pliki przesłane pomyślnie' });
+                }
                 setShowUploadModal(false);
-                setFileToUpload(null);
+                setFilesToUpload([]);
             })
             .catch(error => {
-                console.error("Error uploading file:", error);
-                setActionMessage({ type: 'error', text: `Błąd podczas przesyłania pliku: ${error.response?.data || 'Nieznany błąd'}` });
+                console.error("Error uploading files:", error);
+                setActionMessage({ type: 'error', text: `Błąd podczas przesyłania plików: ${error.response?.data?.error || 'Nieznany błąd'}` });
             });
     };
 
@@ -1570,16 +1580,17 @@ const FolderGrid: React.FC<FolderGridProps> = ({
             {showUploadModal && (
                 <div className="modal">
                     <div className="modal-content">
-                        <h3>Prześlij plik</h3>
+                        <h3>Prześlij pliki</h3>
                         <input
                             type="file"
-                            onChange={(e) => setFileToUpload(e.target.files?.[0] || null)}
+                            multiple
+                            onChange={(e) => setFilesToUpload(Array.from(e.target.files || []))}
                         />
                         <div className="modal-actions">
-                            <button onClick={uploadFile} disabled={!fileToUpload}>Prześlij</button>
+                            <button onClick={uploadFile} disabled={filesToUpload.length === 0}>Prześlij</button>
                             <button onClick={() => {
                                 setShowUploadModal(false);
-                                setFileToUpload(null);
+                                setFilesToUpload([]);
                             }}>Anuluj</button>
                         </div>
                     </div>
@@ -16,7 +16,11 @@ public class CorsConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(List.of("http://localhost:3000")); // 🔥 Adres frontend
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept", "X-Requested-With"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept", "X-Requested-With",
+                "Range", "If-Range", "If-None-Match", "If-Modified-Since"));
+        // Walidatory i zakresy przy pobieraniu plików dostępne dla frontendu
+        configuration.setExposedHeaders(List.of("ETag", "Last-Modified", "Accept-Ranges", "Content-Range",
+                "Content-Disposition"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L); // Czas ważności żadania w sekundach
 
@@ -12,7 +12,8 @@ public class NextcloudConfig {
         return new NextcloudClient(
                 properties.getUrl(),
                 properties.getUsername(),
-                properties.getPassword()
+                properties.getPassword(),
+                properties.getHttp()
         );
     }
 }
\ No newline at end of file
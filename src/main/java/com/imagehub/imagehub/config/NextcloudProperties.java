@@ -3,12 +3,20 @@ package com.imagehub.imagehub.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Configuration
 @ConfigurationProperties(prefix = "nextcloud")
 public class NextcloudProperties {
     private String url;
     private String username;
     private String password;
+    private final Sync sync = new Sync();
+    private final Http http = new Http();
+    private final Export export = new Export();
+    private final FileCache fileCache = new FileCache();
+    private final Upload upload = new Upload();
 
     public String getUrl() {
         return url;
@@ -33,4 +41,384 @@ public class NextcloudProperties {
     public void setPassword(String password) {
         this.password = password;
     }
-}
\ No newline at end of file
+
+    public Sync getSync() {
+        return sync;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public FileCache getFileCache() {
+        return fileCache;
+    }
+
+    public Upload getUpload() {
+        return upload;
+    }
+
+    /**
+     * Ustawienia synchronizacji struktury folderów (nextcloud.sync.*)
+     */
+    public static class Sync {
+        // Maksymalna liczba jednoczesnych zapytań PROPFIND wysyłanych przez crawler
+        private int maxConcurrency = 8;
+        // Katalog, w którym zapisywany jest snapshot struktury folderów (pusty - wyłączone)
+        private String snapshotDir;
+        // Domyślna maksymalna głębokość synchronizowanych folderów (-1 - bez ograniczeń)
+        private int maxDepth = 3;
+        // Głębokość dla poddrzew o podanym prefiksie ścieżki, np. depth-overrides[Katalog]=-1
+        private Map<String, Integer> depthOverrides = new LinkedHashMap<>();
+        // Maksymalna liczba folderów w snapshocie - ogranicza zużycie pamięci przy bardzo dużych drzewach
+        private int maxFolders = 200000;
+        // Okno debounce, w którym zmiany wykonane przez ImageHub są łączone w jedno odświeżenie folderu
+        private long refreshDebounceMs = 500;
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public String getSnapshotDir() {
+            return snapshotDir;
+        }
+
+        public void setSnapshotDir(String snapshotDir) {
+            this.snapshotDir = snapshotDir;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public void setMaxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+        }
+
+        public Map<String, Integer> getDepthOverrides() {
+            return depthOverrides;
+        }
+
+        public void setDepthOverrides(Map<String, Integer> depthOverrides) {
+            this.depthOverrides = depthOverrides;
+        }
+
+        public int getMaxFolders() {
+            return maxFolders;
+        }
+
+        public void setMaxFolders(int maxFolders) {
+            this.maxFolders = maxFolders;
+        }
+
+        public long getRefreshDebounceMs() {
+            return refreshDebounceMs;
+        }
+
+        public void setRefreshDebounceMs(long refreshDebounceMs) {
+            this.refreshDebounceMs = refreshDebounceMs;
+        }
+    }
+
+    /**
+     * Ustawienia połączeń HTTP do Nextcloud (nextcloud.http.*)
+     */
+    public static class Http {
+        // Maksymalna liczba połączeń w puli (łącznie)
+        private int maxConnections = 64;
+        // Maksymalna liczba połączeń do jednego hosta - Nextcloud to zwykle jedna trasa
+        private int maxConnectionsPerRoute = 32;
+        // Maksymalny czas utrzymywania bezczynnego połączenia (keep-alive)
+        private long keepAliveMs = 30000;
+        // Limit czasu nawiązania połączenia
+        private int connectTimeoutMs = 5000;
+        // Limit czasu oczekiwania na dane z gniazda
+        private int socketTimeoutMs = 60000;
+        // Limit czasu oczekiwania na wolne połączenie z puli
+        private int connectionRequestTimeoutMs = 10000;
+        // Wysyłaj nagłówek Basic auth od razu, bez oczekiwania na odpowiedź 401
+        private boolean preemptiveAuth = true;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public long getKeepAliveMs() {
+            return keepAliveMs;
+        }
+
+        public void setKeepAliveMs(long keepAliveMs) {
+            this.keepAliveMs = keepAliveMs;
+        }
+
+        public int getConnectTimeoutMs() {
+            return connectTimeoutMs;
+        }
+
+        public void setConnectTimeoutMs(int connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+
+        public int getSocketTimeoutMs() {
+            return socketTimeoutMs;
+        }
+
+        public void setSocketTimeoutMs(int socketTimeoutMs) {
+            this.socketTimeoutMs = socketTimeoutMs;
+        }
+
+        public int getConnectionRequestTimeoutMs() {
+            return connectionRequestTimeoutMs;
+        }
+
+        public void setConnectionRequestTimeoutMs(int connectionRequestTimeoutMs) {
+            this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+        }
+
+        public boolean isPreemptiveAuth() {
+            return preemptiveAuth;
+        }
+
+        public void setPreemptiveAuth(boolean preemptiveAuth) {
+            this.preemptiveAuth = preemptiveAuth;
+        }
+    }
+
+    /**
+     * Ustawienia eksportu archiwów ZIP (nextcloud.export.*)
+     */
+    public static class Export {
+        // Liczba plików pobieranych z Nextcloud równolegle z wyprzedzeniem podczas tworzenia archiwum
+        private int prefetchDepth = 4;
+        // Budżet pamięci na pobrane z wyprzedzeniem pliki jednego eksportu - nadmiar trafia na dysk
+        private long memoryBudgetMb = 64;
+        // Katalog na pliki tymczasowe eksportu (pusty - katalog tymczasowy systemu)
+        private String spillDir;
+        // Katalog cache'a gotowych archiwów folderów (pusty - cache wyłączony)
+        private String cacheDir;
+        // Limit łącznego rozmiaru archiwów w cache'u
+        private long cacheMaxSizeMb = 2048;
+        // Liczba zadań eksportu w tle wykonywanych jednocześnie
+        private int jobThreads = 2;
+        // Maksymalna liczba zadań eksportu oczekujących w kolejce
+        private int jobQueueCapacity = 16;
+        // Maksymalna liczba aktywnych (oczekujących lub trwających) zadań eksportu jednego użytkownika
+        private int jobMaxPerUser = 2;
+        // Czas przechowywania gotowego archiwum od zakończenia zadania
+        private long jobTtlMinutes = 60;
+        // Katalog archiwów zadań eksportu (pusty - katalog tymczasowy systemu)
+        private String jobDir;
+
+        public int getPrefetchDepth() {
+            return prefetchDepth;
+        }
+
+        public void setPrefetchDepth(int prefetchDepth) {
+            this.prefetchDepth = prefetchDepth;
+        }
+
+        public long getMemoryBudgetMb() {
+            return memoryBudgetMb;
+        }
+
+        public void setMemoryBudgetMb(long memoryBudgetMb) {
+            this.memoryBudgetMb = memoryBudgetMb;
+        }
+
+        public String getSpillDir() {
+            return spillDir;
+        }
+
+        public void setSpillDir(String spillDir) {
+            this.spillDir = spillDir;
+        }
+
+        public String getCacheDir() {
+            return cacheDir;
+        }
+
+        public void setCacheDir(String cacheDir) {
+            this.cacheDir = cacheDir;
+        }
+
+        public long getCacheMaxSizeMb() {
+            return cacheMaxSizeMb;
+        }
+
+        public void setCacheMaxSizeMb(long cacheMaxSizeMb) {
+            this.cacheMaxSizeMb = cacheMaxSizeMb;
+        }
+
+        public int getJobThreads() {
+            return jobThreads;
+        }
+
+        public void setJobThreads(int jobThreads) {
+            this.jobThreads = jobThreads;
+        }
+
+        public int getJobQueueCapacity() {
+            return jobQueueCapacity;
+        }
+
+        public void setJobQueueCapacity(int jobQueueCapacity) {
+            this.jobQueueCapacity = jobQueueCapacity;
+        }
+
+        public int getJobMaxPerUser() {
+            return jobMaxPerUser;
+        }
+
+        public void setJobMaxPerUser(int jobMaxPerUser) {
+            this.jobMaxPerUser = jobMaxPerUser;
+        }
+
+        public long getJobTtlMinutes() {
+            return jobTtlMinutes;
+        }
+
+        public void setJobTtlMinutes(long jobTtlMinutes) {
+            this.jobTtlMinutes = jobTtlMinutes;
+        }
+
+        public String getJobDir() {
+            return jobDir;
+        }
+
+        public void setJobDir(String jobDir) {
+            this.jobDir = jobDir;
+        }
+    }
+
+    /**
+     * Ustawienia lokalnego cache'a treści plików (nextcloud.file-cache.*)
+     */
+    public static class FileCache {
+        // Katalog cache'a (pusty - cache wyłączony)
+        private String dir;
+        // Limit łącznego rozmiaru plików w cache'u
+        private long maxSizeMb = 4096;
+        // Pliki większe od limitu nie są cache'owane
+        private long maxFileMb = 64;
+        // Okno, w którym wpis jest wysyłany bez potwierdzenia ETagu w Nextcloud
+        private long revalidateAfterSeconds = 10;
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public long getMaxSizeMb() {
+            return maxSizeMb;
+        }
+
+        public void setMaxSizeMb(long maxSizeMb) {
+            this.maxSizeMb = maxSizeMb;
+        }
+
+        public long getMaxFileMb() {
+            return maxFileMb;
+        }
+
+        public void setMaxFileMb(long maxFileMb) {
+            this.maxFileMb = maxFileMb;
+        }
+
+        public long getRevalidateAfterSeconds() {
+            return revalidateAfterSeconds;
+        }
+
+        public void setRevalidateAfterSeconds(long revalidateAfterSeconds) {
+            this.revalidateAfterSeconds = revalidateAfterSeconds;
+        }
+    }
+
+    /**
+     * Ustawienia wysyłania plików do Nextcloud (nextcloud.upload.*)
+     */
+    public static class Upload {
+        // Pliki większe od progu są wysyłane fragmentami (chunked upload v2), mniejsze jednym żądaniem PUT
+        private long chunkThresholdMb = 64;
+        // Rozmiar fragmentu - Nextcloud wymaga co najmniej 5 MB (poza ostatnim fragmentem)
+        private int chunkSizeMb = 10;
+        // Liczba fragmentów wysyłanych równolegle (każdy jest buforowany w pamięci)
+        private int chunkParallelism = 3;
+        // Rozmiar fragmentu wznawialnych uploadów (/api/nextcloud/uploads)
+        private long resumableChunkSizeMb = 16;
+        // Czas od ostatniego fragmentu, po którym niedokończona sesja jest usuwana
+        private long resumableSessionTtlHours = 24;
+        // Liczba plików uploadu zbiorczego (/api/nextcloud/upload-batch) wysyłanych równocześnie
+        private int batchParallelism = 4;
+
+        public long getChunkThresholdMb() {
+            return chunkThresholdMb;
+        }
+
+        public void setChunkThresholdMb(long chunkThresholdMb) {
+            this.chunkThresholdMb = chunkThresholdMb;
+        }
+
+        public int getChunkSizeMb() {
+            return chunkSizeMb;
+        }
+
+        public void setChunkSizeMb(int chunkSizeMb) {
+            this.chunkSizeMb = chunkSizeMb;
+        }
+
+        public int getChunkParallelism() {
+            return chunkParallelism;
+        }
+
+        public void setChunkParallelism(int chunkParallelism) {
+            this.chunkParallelism = chunkParallelism;
+        }
+
+        public long getResumableChunkSizeMb() {
+            return resumableChunkSizeMb;
+        }
+
+        public void setResumableChunkSizeMb(long resumableChunkSizeMb) {
+            this.resumableChunkSizeMb = resumableChunkSizeMb;
+        }
+
+        public long getResumableSessionTtlHours() {
+            return resumableSessionTtlHours;
+        }
+
+        public void setResumableSessionTtlHours(long resumableSessionTtlHours) {
+            this.resumableSessionTtlHours = resumableSessionTtlHours;
+        }
+
+        public int getBatchParallelism() {
+            return batchParallelism;
+        }
+
+        public void setBatchParallelism(int batchParallelism) {
+            this.batchParallelism = batchParallelism;
+        }
+    }
+}
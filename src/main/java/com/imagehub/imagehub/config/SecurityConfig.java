@@ -1,6 +1,7 @@
 package com.imagehub.imagehub.config;
 
 import com.imagehub.imagehub.security.JwtFilter;
+import jakarta.servlet.DispatcherType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
@@ -40,6 +41,8 @@ public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtFilter jwtF
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                    // Dokończenie odpowiedzi strumieniowej (np. archiwum ZIP) - żądanie zostało już autoryzowane
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                     .requestMatchers("/api/auth/login", "/api/auth/register", "/error").permitAll()
 
                     // punkt użytkownika
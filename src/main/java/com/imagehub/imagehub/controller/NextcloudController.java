@@ -1,24 +1,45 @@
 package com.imagehub.imagehub.controller;
 
 import com.imagehub.imagehub.model.User;
+import com.imagehub.imagehub.service.CachedFile;
+import com.imagehub.imagehub.service.FolderZipExport;
 import com.imagehub.imagehub.service.NextcloudService;
 import com.imagehub.imagehub.service.NextcloudSyncService;
+import com.imagehub.imagehub.service.RemoteFile;
 import com.imagehub.imagehub.service.UserService;
+import com.imagehub.imagehub.service.ZipExportJobService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import com.imagehub.imagehub.service.FolderPermissionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
-
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/nextcloud")
@@ -27,15 +48,36 @@ public class NextcloudController {
   
     private static final Logger logger = LoggerFactory.getLogger(NextcloudController.class);
 
+    // Rozmiar bufora przy strumieniowym przesyłaniu plików z Nextcloud do klienta
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    // Atrybuty żądania obsługiwane przez Tomcata przy wysyłce pliku przez sendfile
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    // Nagłówki warunkowe i zakresu przekazywane do Nextcloud przy pobieraniu pliku
+    private static final List<String> FORWARDED_REQUEST_HEADERS = List.of(
+            HttpHeaders.RANGE, HttpHeaders.IF_RANGE, HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE);
+    // Nagłówki odpowiedzi Nextcloud przekazywane klientowi
+    private static final List<String> FORWARDED_RESPONSE_HEADERS = List.of(
+            HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CONTENT_RANGE);
+    // Każdy zakres to osobne żądanie do Nextcloud - przy większej liczbie wysyłany jest cały plik
+    private static final int MAX_MULTIPART_RANGES = 16;
+
     private final NextcloudService nextcloudService;
     private final NextcloudSyncService nextcloudSyncService;
     private final FolderPermissionService folderPermissionService;
+    private final ZipExportJobService zipExportJobService;
 
     @Autowired
-    public NextcloudController(NextcloudService nextcloudService, NextcloudSyncService nextcloudSyncService, FolderPermissionService folderPermissionService) {
+    public NextcloudController(NextcloudService nextcloudService, NextcloudSyncService nextcloudSyncService,
+                               FolderPermissionService folderPermissionService, ZipExportJobService zipExportJobService) {
         this.nextcloudService = nextcloudService;
         this.nextcloudSyncService = nextcloudSyncService;
         this.folderPermissionService = folderPermissionService;
+        this.zipExportJobService = zipExportJobService;
         logger.info("🔹 Kontroler Nextcloud zainicjalizowany");
     }
 
@@ -180,7 +222,11 @@ public class NextcloudController {
         try {
             logger.info("Received request to upload file {} to path: {} by user: {}",
                     file.getOriginalFilename(), path, currentUser.getUsername());
-            nextcloudService.uploadFile(path + "/" + file.getOriginalFilename(), file.getBytes(), currentUser);
+            // Treść jest przesyłana do Nextcloud strumieniowo prosto z części multipart
+            try (InputStream data = file.getInputStream()) {
+                nextcloudService.uploadFile(path + "/" + file.getOriginalFilename(), data, file.getSize(),
+                        file.getContentType(), currentUser);
+            }
             return ResponseEntity.ok("Plik został przesłany pomyślnie");
         } catch (SecurityException e) {
             logger.warn("Security violation: {} for upload to {} by user {}",
@@ -194,6 +240,48 @@ public class NextcloudController {
         }
     }
 
+    /**
+     * Upload wielu plików do jednego folderu w jednym żądaniu - uprawnienia są sprawdzane raz,
+     * a wynik zawiera status każdego pliku (207, jeśli część plików nie została przesłana)
+     */
+    @PostMapping("/upload-batch")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> uploadFiles(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("path") String path,
+            @AuthenticationPrincipal User currentUser) {
+        if (files.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Brak plików do przesłania"));
+        }
+
+        logger.info("Received request to upload {} files to path: {} by user: {}",
+                files.size(), path, currentUser.getUsername());
+        // Części multipart są otwierane dopiero przy wysyłaniu - treść trafia do Nextcloud strumieniowo
+        List<NextcloudService.BatchUploadItem> items = files.stream()
+                .map(file -> new NextcloudService.BatchUploadItem(file.getOriginalFilename(), file.getSize(),
+                        file.getContentType(), file))
+                .toList();
+        try {
+            List<NextcloudService.BatchUploadResult> results = nextcloudService.uploadFiles(path, items, currentUser);
+            long failed = results.stream().filter(result -> result.error() != null).count();
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("path", path);
+            response.put("uploaded", results.size() - failed);
+            response.put("failed", failed);
+            response.put("results", results.stream().map(NextcloudService.BatchUploadResult::toMap).toList());
+            return ResponseEntity.status(failed == 0 ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(response);
+        } catch (SecurityException e) {
+            logger.warn("Security violation: {} for batch upload to {} by user {}",
+                    e.getMessage(), path, currentUser.getUsername());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Brak uprawnień do przesyłania plików do tego folderu"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
     @PostMapping("/directory")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<String> createDirectory(
@@ -219,129 +307,458 @@ public class NextcloudController {
 
 @GetMapping("/files/download")
 @PreAuthorize("isAuthenticated()")
-public ResponseEntity<byte[]> downloadFile(
+public void downloadFile(
         @RequestParam("file") String path,
-        @AuthenticationPrincipal User currentUser) {
-    try {
-        logger.info("Otrzymano żądanie pobrania pliku: {} przez użytkownika: {}", path, currentUser.getUsername());
+        @AuthenticationPrincipal User currentUser,
+        HttpServletRequest request,
+        HttpServletResponse response) {
+    logger.info("Otrzymano żądanie pobrania pliku: {} przez użytkownika: {}", path, currentUser.getUsername());
+
+    // Sprawdź uprawnienia do pobierania plików
+    if (!folderPermissionService.canUserDownloadFolder(currentUser, path)) {
+        logger.warn("Brak uprawnień do pobierania pliku {} dla użytkownika {}",
+                path, currentUser.getUsername());
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        return;
+    }
 
-        // Sprawdź uprawnienia do pobierania plików
-        if (!folderPermissionService.canUserDownloadFolder(currentUser, path)) {
-            logger.warn("Brak uprawnień do pobierania pliku {} dla użytkownika {}",
-                    path, currentUser.getUsername());
-            return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                    .body(null);
+    // Nagłówki warunkowe i zakres są przekazywane do Nextcloud - walidatory (ETag, Last-Modified)
+    // pochodzą z Nextcloud, a częściowe pobranie nie ściąga całego pliku
+    Map<String, String> upstreamHeaders = new LinkedHashMap<>();
+    for (String name : FORWARDED_REQUEST_HEADERS) {
+        String value = request.getHeader(name);
+        if (value != null) {
+            upstreamHeaders.put(name, value);
         }
+    }
+    List<HttpRange> ranges = parseRanges(request.getHeader(HttpHeaders.RANGE));
+    if (ranges.isEmpty()) {
+        upstreamHeaders.remove(HttpHeaders.RANGE);
+        upstreamHeaders.remove(HttpHeaders.IF_RANGE);
+    } else if (ranges.size() > 1) {
+        // Wiele zakresów - Nextcloud obsługuje pojedynczy zakres, kolejne są pobierane osobno
+        upstreamHeaders.put(HttpHeaders.RANGE, "bytes=" + ranges.get(0));
+    }
 
-        byte[] fileContent = nextcloudService.downloadFile(path, currentUser);
+    // Pobierz nazwę pliku z ścieżki
+    String fileName = path.substring(path.lastIndexOf('/') + 1);
+    if (fileName.isEmpty()) {
+        fileName = "file";
+    }
 
-        // Pobierz nazwę pliku z ścieżki
-        String fileName = path.substring(path.lastIndexOf('/') + 1);
-        if (fileName.isEmpty()) {
-            fileName = "file";
+    // Całe pliki są wysyłane z lokalnego cache'a treści, zakresy są pobierane z Nextcloud
+    if (request.getHeader(HttpHeaders.RANGE) == null) {
+        try {
+            CachedFile cachedFile = nextcloudService.openCachedFile(path, currentUser);
+            if (cachedFile != null) {
+                sendCachedFile(cachedFile, fileName, request, response);
+                return;
+            }
+        } catch (SecurityException e) {
+            logger.warn("Naruszenie bezpieczeństwa: {} dla pliku {} przez użytkownika {}",
+                    e.getMessage(), path, currentUser.getUsername());
+            setErrorStatus(response, HttpStatus.FORBIDDEN);
+            return;
+        } catch (Exception e) {
+            // Błąd cache'a nie blokuje pobrania - plik zostanie pobrany bezpośrednio z Nextcloud
+            logger.warn("Cache treści niedostępny dla pliku {}: {}", path, e.getMessage());
         }
+    }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                .body(fileContent);
+    // Treść pliku jest przepisywana z odpowiedzi Nextcloud do odpowiedzi HTTP stałym buforem,
+    // bez buforowania całego pliku w pamięci
+    try (RemoteFile remoteFile = nextcloudService.openFile(path, currentUser, upstreamHeaders)) {
+        int status = remoteFile.getStatus();
+        boolean multipart = status == HttpStatus.PARTIAL_CONTENT.value() && ranges.size() > 1;
+        response.setStatus(status);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        for (String name : FORWARDED_RESPONSE_HEADERS) {
+            String value = remoteFile.getHeader(name);
+            // Przy wielu zakresach Content-Range jest podawany w każdej części osobno
+            if (value != null && !(multipart && name.equals(HttpHeaders.CONTENT_RANGE))) {
+                response.setHeader(name, value);
+            }
+        }
+
+        // 304, 412 i 416 - bez treści
+        if (status != HttpStatus.OK.value() && status != HttpStatus.PARTIAL_CONTENT.value()) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+
+        String contentType = remoteFile.getContentType() != null
+                ? remoteFile.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        if (multipart) {
+            writeMultipartRanges(path, currentUser, remoteFile, contentType, ranges, response);
+            return;
+        }
+
+        response.setContentType(contentType);
+        if (remoteFile.getContentLength() >= 0) {
+            response.setContentLengthLong(remoteFile.getContentLength());
+        }
+
+        OutputStream out = response.getOutputStream();
+        if (copyToClient(remoteFile, out, path)) {
+            out.flush();
+        }
     } catch (SecurityException e) {
         logger.warn("Naruszenie bezpieczeństwa: {} dla pliku {} przez użytkownika {}",
                 e.getMessage(), path, currentUser.getUsername());
-        return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                .body(null);
+        setErrorStatus(response, HttpStatus.FORBIDDEN);
+    } catch (FileNotFoundException e) {
+        logger.warn("Nie znaleziono pliku {}: {}", path, e.getMessage());
+        setErrorStatus(response, HttpStatus.NOT_FOUND);
     } catch (Exception e) {
         logger.error("Błąd podczas pobierania pliku {}: {}", path, e.getMessage(), e);
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body(null);
+        setErrorStatus(response, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
 
-    @GetMapping("/files/download-zip")
-    @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<byte[]> downloadFolderAsZip(
-            @RequestParam("file") String folderPath,
-            @AuthenticationPrincipal User currentUser) {
+    /**
+     * Wyślij plik z lokalnego cache'a: 304 na podstawie walidatorów z Nextcloud, treść przez sendfile
+     * Tomcata lub FileChannel.transferTo (bez kopiowania przez bufory w JVM, o ile pozwala na to kontener)
+     */
+    private void sendCachedFile(CachedFile cachedFile, String fileName, HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(cachedFile.getEtag(), cachedFile.getLastModified())) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setContentType(cachedFile.getContentType() != null
+                ? cachedFile.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(cachedFile.getSize());
+
+        if (trySendfile(request, cachedFile.getFile(), cachedFile.getSize())) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(cachedFile.getFile(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < cachedFile.getSize()) {
+                position += channel.transferTo(position, cachedFile.getSize() - position, target);
+            }
+        }
+    }
+
+    /**
+     * Odczytaj zakresy z nagłówka Range. Niepoprawny nagłówek lub zbyt wiele zakresów jest ignorowany
+     * (RFC 9110) - wtedy wysyłany jest cały plik.
+     */
+    private List<HttpRange> parseRanges(String rangeHeader) {
+        if (rangeHeader == null) {
+            return List.of();
+        }
         try {
-            logger.info("Otrzymano żądanie pobrania folderu jako zip: {} przez użytkownika: {}",
-                    folderPath, currentUser.getUsername());
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() <= MAX_MULTIPART_RANGES ? ranges : List.of();
+        } catch (IllegalArgumentException e) {
+            logger.debug("Ignorowanie niepoprawnego nagłówka Range '{}': {}", rangeHeader, e.getMessage());
+            return List.of();
+        }
+    }
 
-            // Sprawdź uprawnienia do pobierania folderu
-            if (!folderPermissionService.canUserDownloadFolder(currentUser, folderPath)) {
-                logger.warn("Brak uprawnień do pobierania folderu {} dla użytkownika {}",
-                        folderPath, currentUser.getUsername());
-                return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                        .body(null);
+    /**
+     * Wyślij odpowiedź multipart/byteranges. Pierwszy zakres jest już otwarty, kolejne są pobierane
+     * z Nextcloud osobnymi żądaniami z If-Match, aby wszystkie części pochodziły z tej samej wersji pliku.
+     */
+    private void writeMultipartRanges(String path, User currentUser, RemoteFile firstPart, String contentType,
+                                      List<HttpRange> ranges, HttpServletResponse response) throws Exception {
+        String etag = firstPart.getHeader(HttpHeaders.ETAG);
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        OutputStream out = response.getOutputStream();
+
+        for (int i = 0; i < ranges.size(); i++) {
+            if (i == 0) {
+                if (!writeRangePart(firstPart, contentType, boundary, out, path)) {
+                    return;
+                }
+                continue;
             }
 
-            // Wygeneruj zip z folderu
-            byte[] zipData = nextcloudService.createZipFromFolder(folderPath, currentUser);
+            Map<String, String> partHeaders = new LinkedHashMap<>();
+            partHeaders.put(HttpHeaders.RANGE, "bytes=" + ranges.get(i));
+            if (etag != null) {
+                partHeaders.put(HttpHeaders.IF_MATCH, etag);
+            }
+            try (RemoteFile part = nextcloudService.openFile(path, currentUser, partHeaders)) {
+                if (part.getStatus() != HttpStatus.PARTIAL_CONTENT.value()) {
+                    // Plik zmienił się w trakcie lub zakres jest poza plikiem - odpowiedź jest już wysłana,
+                    // więc pozostaje tylko ją przerwać
+                    throw new IOException("Nextcloud zwrócił status " + part.getStatus() + " dla zakresu " + ranges.get(i));
+                }
+                if (!writeRangePart(part, contentType, boundary, out, path)) {
+                    return;
+                }
+            }
+        }
 
-            String folderName = folderPath.substring(folderPath.lastIndexOf('/') + 1);
-            if (folderName.isEmpty()) {
-                folderName = "folder";
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private boolean writeRangePart(RemoteFile part, String contentType, String boundary, OutputStream out,
+                                   String path) throws IOException {
+        String partHeader = "\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": " + part.getHeader(HttpHeaders.CONTENT_RANGE) + "\r\n\r\n";
+        try {
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            part.abort();
+            logger.info("Klient przerwał pobieranie pliku {}: {}", path, e.getMessage());
+            return false;
+        }
+        return copyToClient(part, out, path);
+    }
+
+    /**
+     * Przepisz treść z Nextcloud do klienta; false, jeśli klient rozłączył się w trakcie
+     */
+    private boolean copyToClient(RemoteFile remoteFile, OutputStream out, String path) throws IOException {
+        InputStream in = remoteFile.getInputStream();
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            try {
+                out.write(buffer, 0, read);
+            } catch (IOException e) {
+                // Klient rozłączył się - przerwij żądanie do Nextcloud zamiast doczytywać plik
+                remoteFile.abort();
+                logger.info("Klient przerwał pobieranie pliku {}: {}", path, e.getMessage());
+                return false;
             }
+        }
+        return true;
+    }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + folderName + ".zip\"")
-                    .body(zipData);
-        } catch (SecurityException e) {
-            logger.warn("Naruszenie bezpieczeństwa: {} dla folderu {} przez użytkownika {}",
-                    e.getMessage(), folderPath, currentUser.getUsername());
+    /**
+     * Ustaw status błędu, o ile odpowiedź nie została jeszcze wysłana do klienta
+     */
+    private void setErrorStatus(HttpServletResponse response, HttpStatus status) {
+        if (!response.isCommitted()) {
+            response.reset();
+            response.setStatus(status.value());
+        }
+    }
+
+    /**
+     * Przekaż wysyłkę pliku z dysku do Tomcata (sendfile) - treść nie jest kopiowana przez JVM.
+     * Zwraca false, jeśli konektor nie obsługuje sendfile.
+     */
+    private boolean trySendfile(HttpServletRequest request, Path file, long size) {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+        request.setAttribute(SENDFILE_END_ATTRIBUTE, size);
+        return true;
+    }
+
+    @GetMapping("/files/download-zip")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StreamingResponseBody> downloadFolderAsZip(
+            @RequestParam("file") String folderPath,
+            @AuthenticationPrincipal User currentUser,
+            HttpServletRequest request) {
+        logger.info("Otrzymano żądanie pobrania folderu jako zip: {} przez użytkownika: {}",
+                folderPath, currentUser.getUsername());
+
+        // Uprawnienia są sprawdzane przed wysłaniem nagłówków - później nie można już zmienić statusu
+        if (!folderPermissionService.canUserDownloadFolder(currentUser, folderPath)
+                || !folderPermissionService.canUserReadFolder(currentUser, folderPath)) {
+            logger.warn("Brak uprawnień do pobierania folderu {} dla użytkownika {}",
+                    folderPath, currentUser.getUsername());
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(null);
+        }
+
+        // Listowanie folderu i sprawdzenie cache'a również przed wysłaniem nagłówków
+        FolderZipExport export;
+        try {
+            export = nextcloudService.prepareFolderZip(folderPath, currentUser);
+        } catch (SecurityException e) {
+            logger.warn("Brak uprawnień do eksportu folderu {} dla użytkownika {}: {}",
+                    folderPath, currentUser.getUsername(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
         } catch (Exception e) {
-            logger.error("Błąd podczas tworzenia zip dla folderu {}: {}", folderPath, e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(null);
+            logger.error("Błąd podczas przygotowania zip dla folderu {}: {}", folderPath, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+
+        String folderName = folderPath.substring(folderPath.lastIndexOf('/') + 1);
+        if (folderName.isEmpty()) {
+            folderName = "folder";
         }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + folderName + ".zip\"");
+
+        if (export.isCached()) {
+            builder.contentLength(export.getSize());
+            // Archiwum z cache'a wysyłane przez sendfile Tomcata - bez kopiowania przez JVM
+            if (trySendfile(request, export.getCachedFile(), export.getSize())) {
+                return builder.build();
+            }
+        }
+
+        // Archiwum jest zapisywane bezpośrednio do odpowiedzi w miarę pobierania plików z Nextcloud
+        StreamingResponseBody body = out -> {
+            try {
+                export.writeTo(out);
+            } catch (Exception e) {
+                logger.error("Błąd podczas tworzenia zip dla folderu {}: {}", folderPath, e.getMessage(), e);
+                // Przerwanie odpowiedzi sygnalizuje klientowi niekompletne archiwum
+                throw new IOException("Nie udało się utworzyć archiwum ZIP: " + e.getMessage(), e);
+            }
+        };
+
+        return builder.body(body);
     }
 
 
     @PostMapping("/files/download-multiple")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<byte[]> downloadMultipleFiles(
+    public ResponseEntity<StreamingResponseBody> downloadMultipleFiles(
             @RequestBody MultipleDownloadRequest request,
             @AuthenticationPrincipal User currentUser) {
-        try {
-            logger.info("Otrzymano żądanie pobrania wielu plików przez użytkownika: {}, liczba elementów: {}",
-                    currentUser.getUsername(), request.getPaths().size());
-
-            // Sprawdź uprawnienia do pobierania dla każdej ścieżki
-            for (String path : request.getPaths()) {
-                if (!folderPermissionService.canUserDownloadFolder(currentUser, path)) {
-                    logger.warn("Brak uprawnień do pobierania pliku/folderu {} dla użytkownika {}",
-                            path, currentUser.getUsername());
-                    return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                            .body(null);
-                }
+        logger.info("Otrzymano żądanie pobrania wielu plików przez użytkownika: {}, liczba elementów: {}",
+                currentUser.getUsername(), request.getPaths().size());
+
+        // Sprawdź uprawnienia do pobierania dla każdej ścieżki
+        for (String path : request.getPaths()) {
+            if (!folderPermissionService.canUserDownloadFolder(currentUser, path)) {
+                logger.warn("Brak uprawnień do pobierania pliku/folderu {} dla użytkownika {}",
+                        path, currentUser.getUsername());
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(null);
             }
+        }
 
-            // Użyj istniejącej usługi do utworzenia ZIP z wielu plików/folderów
-            byte[] zipData = nextcloudService.createZipFromMultiplePaths(request.getPaths(), currentUser);
+        // Utwórz unikalną nazwę pliku z datą i czasem
+        String timestamp = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date());
+        String fileName = "pobrane-elementy-" + timestamp + ".zip";
+
+        // Archiwum jest zapisywane bezpośrednio do odpowiedzi w miarę pobierania plików z Nextcloud
+        StreamingResponseBody body = out -> {
+            try {
+                nextcloudService.writeZipFromMultiplePaths(request.getPaths(), currentUser, out);
+            } catch (Exception e) {
+                logger.error("Błąd podczas tworzenia ZIP z wielu plików: {}", e.getMessage(), e);
+                // Przerwanie odpowiedzi sygnalizuje klientowi niekompletne archiwum
+                throw new IOException("Nie udało się utworzyć archiwum ZIP: " + e.getMessage(), e);
+            }
+        };
 
-            // Utwórz unikalną nazwę pliku z datą i czasem
-            String timestamp = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date());
-            String fileName = "pobrane-elementy-" + timestamp + ".zip";
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .body(zipData);
-        } catch (SecurityException e) {
-            logger.warn("Naruszenie bezpieczeństwa przy pobieraniu wielu plików przez użytkownika {}: {}",
-                    currentUser.getUsername(), e.getMessage());
-            return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                    .body(null);
-        } catch (Exception e) {
-            logger.error("Błąd podczas tworzenia ZIP z wielu plików: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(null);
+
+
+    /**
+     * Zleć eksport wielu plików i folderów do ZIP w tle - dla dużych zaznaczeń zamiast /files/download-multiple
+     */
+    @PostMapping("/export-jobs")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> submitExportJob(
+            @RequestBody MultipleDownloadRequest request,
+            @AuthenticationPrincipal User currentUser) {
+        if (request.getPaths() == null || request.getPaths().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Brak ścieżek do eksportu"));
+        }
+
+        // Sprawdź uprawnienia do pobierania dla każdej ścieżki
+        for (String path : request.getPaths()) {
+            if (!folderPermissionService.canUserDownloadFolder(currentUser, path)) {
+                logger.warn("Brak uprawnień do eksportu pliku/folderu {} dla użytkownika {}",
+                        path, currentUser.getUsername());
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("error", "Brak uprawnień do pobrania: " + path));
+            }
+        }
+
+        try {
+            ZipExportJobService.ExportJob job = zipExportJobService.submit(request.getPaths(), currentUser);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toMap());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Kolejka zadań eksportu ZIP jest pełna");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Zbyt wiele eksportów w kolejce, spróbuj ponownie później"));
+        }
+    }
+
+    /**
+     * Postęp zadania eksportu (bajty i wpisy)
+     */
+    @GetMapping("/export-jobs/{id}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> getExportJob(
+            @PathVariable String id,
+            @AuthenticationPrincipal User currentUser) {
+        ZipExportJobService.ExportJob job = zipExportJobService.getJob(id, currentUser);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
+        return ResponseEntity.ok(job.toMap());
     }
 
+    /**
+     * Pobierz gotowe archiwum zadania eksportu
+     */
+    @GetMapping("/export-jobs/{id}/download")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StreamingResponseBody> downloadExportJob(
+            @PathVariable String id,
+            @AuthenticationPrincipal User currentUser,
+            HttpServletRequest request) {
+        ZipExportJobService.ExportJob job = zipExportJobService.getJob(id, currentUser);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        Path file = job.getFile();
+        if (file == null || !Files.isRegularFile(file)) {
+            // Zadanie jeszcze trwa lub zakończyło się błędem
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        String timestamp = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new java.util.Date());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(job.getBytesWritten())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"pobrane-elementy-" + timestamp + ".zip\"");
 
+        if (trySendfile(request, file, job.getBytesWritten())) {
+            return builder.build();
+        }
+        return builder.body(out -> Files.copy(file, out));
+    }
+
+    /**
+     * Anuluj zadanie eksportu lub usuń gotowe archiwum
+     */
+    @DeleteMapping("/export-jobs/{id}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Void> cancelExportJob(
+            @PathVariable String id,
+            @AuthenticationPrincipal User currentUser) {
+        if (!zipExportJobService.cancel(id, currentUser)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
 
     @DeleteMapping("/files")
     @PreAuthorize("isAuthenticated()")
@@ -408,9 +825,18 @@ public ResponseEntity<byte[]> downloadFile(
     @GetMapping("/sync/status")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<Map<String, Object>> getSyncStatus() {
-        Map<String, Object> status = new HashMap<>();
-        status.put("lastSyncTime", nextcloudSyncService.getLastSyncTime());
-        return ResponseEntity.ok(status);
+        return ResponseEntity.ok(nextcloudSyncService.getSyncStatus());
+    }
+
+    /**
+     * Pobierz metryki dostępu do Nextcloud (połączone listowania spoza cache'a, pula połączeń HTTP)
+     */
+    @GetMapping("/metrics")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> metrics = nextcloudService.getNextcloudMetrics();
+        metrics.put("exportJobs", zipExportJobService.getMetrics());
+        return ResponseEntity.ok(metrics);
     }
 
     /**
@@ -0,0 +1,185 @@
+package com.imagehub.imagehub.controller;
+
+import com.imagehub.imagehub.model.UploadSession;
+import com.imagehub.imagehub.model.User;
+import com.imagehub.imagehub.service.NextcloudService;
+import com.imagehub.imagehub.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Wznawialne uploady: utworzenie sesji, wysyłanie fragmentów w dowolnej kolejności,
+ * sprawdzenie brakujących fragmentów i zatwierdzenie
+ */
+@RestController
+@RequestMapping("/api/nextcloud/uploads")
+public class ResumableUploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadController.class);
+
+    private final ResumableUploadService resumableUploadService;
+
+    @Autowired
+    public ResumableUploadController(ResumableUploadService resumableUploadService) {
+        this.resumableUploadService = resumableUploadService;
+    }
+
+    @PostMapping
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> createSession(
+            @RequestBody CreateUploadSessionRequest request,
+            @AuthenticationPrincipal User currentUser) {
+        if (request.getPath() == null || request.getFileName() == null || request.getFileName().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Brak ścieżki lub nazwy pliku"));
+        }
+        if (!NextcloudService.isValidFileName(request.getFileName())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Niepoprawna nazwa pliku"));
+        }
+
+        String targetPath = request.getPath().isEmpty()
+                ? request.getFileName()
+                : request.getPath() + "/" + request.getFileName();
+        try {
+            UploadSession session = resumableUploadService.createSession(targetPath, request.getSize(),
+                    request.getContentType(), currentUser);
+            return ResponseEntity.status(HttpStatus.CREATED).body(resumableUploadService.toMap(session));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Brak uprawnień do przesyłania plików do tego folderu"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Błąd podczas tworzenia sesji uploadu do {}: {}", targetPath, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Nie udało się utworzyć sesji uploadu"));
+        }
+    }
+
+    /**
+     * Stan sesji - m.in. lista brakujących fragmentów do wysłania po wznowieniu
+     */
+    @GetMapping("/{id}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> getSession(
+            @PathVariable String id,
+            @AuthenticationPrincipal User currentUser) {
+        try {
+            return ResponseEntity.ok(resumableUploadService.toMap(resumableUploadService.getSession(id, currentUser)));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+    }
+
+    /**
+     * Fragment jest treścią żądania (application/octet-stream) i jest przesyłany do Nextcloud strumieniowo
+     */
+    @PutMapping("/{id}/chunks/{index}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+            @PathVariable String id,
+            @PathVariable int index,
+            @AuthenticationPrincipal User currentUser,
+            HttpServletRequest request) {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+        }
+
+        try (InputStream data = request.getInputStream()) {
+            UploadSession session = resumableUploadService.uploadChunk(id, index, data, contentLength, currentUser);
+            return ResponseEntity.ok(resumableUploadService.toMap(session));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            // Fragment nie został oznaczony jako odebrany - klient może go wysłać ponownie
+            logger.warn("Błąd podczas przesyłania fragmentu {} sesji {}: {}", index, id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                    .body(Map.of("error", "Nie udało się przesłać fragmentu " + index));
+        }
+    }
+
+    @PostMapping("/{id}/commit")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> commit(
+            @PathVariable String id,
+            @AuthenticationPrincipal User currentUser) {
+        try {
+            resumableUploadService.commit(id, currentUser);
+            return ResponseEntity.ok(Map.of("message", "Plik został przesłany pomyślnie"));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Błąd podczas składania pliku sesji {}: {}", id, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Nie udało się złożyć pliku"));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<Void> abort(
+            @PathVariable String id,
+            @AuthenticationPrincipal User currentUser) {
+        try {
+            resumableUploadService.abort(id, currentUser);
+            return ResponseEntity.noContent().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+    }
+}
+
+// Klasa pomocnicza dla żądania utworzenia sesji uploadu
+class CreateUploadSessionRequest {
+    private String path;
+    private String fileName;
+    private long size;
+    private String contentType;
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+}
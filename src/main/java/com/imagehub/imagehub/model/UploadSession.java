@@ -0,0 +1,126 @@
+package com.imagehub.imagehub.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sesja wznawialnego uploadu - fragmenty trafiają od razu do katalogu tymczasowego
+ * w Nextcloud (chunked upload v2), a baza przechowuje, które z nich już dotarły
+ */
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "user_id", nullable = false)
+    @NotNull(message = "User cannot be null")
+    private User user;
+
+    @NotBlank(message = "Target path cannot be blank")
+    @Column(name = "target_path", nullable = false, length = 1024)
+    private String targetPath;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "file_size", nullable = false)
+    private long fileSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private long chunkSize;
+
+    @Column(name = "total_chunks", nullable = false)
+    private int totalChunks;
+
+    // Numery (od 0) fragmentów potwierdzonych przez Nextcloud
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "upload_session_chunks", joinColumns = @JoinColumn(name = "session_id"))
+    @Column(name = "chunk_index", nullable = false)
+    private Set<Integer> receivedChunks = new HashSet<>();
+
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private long updatedAt;
+
+    // Konstruktor domyślny
+    public UploadSession() {
+    }
+
+    public UploadSession(String id, User user, String targetPath, String contentType, long fileSize, long chunkSize) {
+        this.id = id;
+        this.user = user;
+        this.targetPath = targetPath;
+        this.contentType = contentType;
+        this.fileSize = fileSize;
+        this.chunkSize = chunkSize;
+        this.totalChunks = (int) Math.max(1, (fileSize + chunkSize - 1) / chunkSize);
+        this.createdAt = System.currentTimeMillis();
+        this.updatedAt = createdAt;
+    }
+
+    /**
+     * Oczekiwany rozmiar fragmentu - wszystkie poza ostatnim mają rozmiar chunkSize
+     */
+    public long getExpectedChunkLength(int index) {
+        return index < totalChunks - 1 ? chunkSize : fileSize - chunkSize * (totalChunks - 1);
+    }
+
+    public boolean isComplete() {
+        return receivedChunks.size() == totalChunks;
+    }
+
+    // Gettery i settery
+    public String getId() {
+        return id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public String getTargetPath() {
+        return targetPath;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public Set<Integer> getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -25,52 +25,9 @@ public interface FolderPermissionRepository extends JpaRepository<FolderPermissi
             "fp.includeSubfolders = true")
     List<FolderPermission> findRelevantPermissionsForPath(@Param("user") User user, @Param("folderPath") String folderPath);
 
-    // Sprawdź czy istnieje uprawnienie do odczytu dla danego folderu
-    @Query("SELECT CASE WHEN COUNT(fp) > 0 THEN true ELSE false END FROM FolderPermission fp " +
-            "WHERE fp.user = :user AND fp.canRead = true AND " +
-            "(" +
-            "   fp.folderPath = :folderPath OR " +  // dokładne dopasowanie
-            "   (fp.folderPath = '' AND fp.includeSubfolders = true) OR " +  // uprawnienie do folderu głównego z podfolderami
-            "   (:folderPath LIKE CONCAT(fp.folderPath, '/%') AND fp.includeSubfolders = true)" +  // podfolder
-            ")")
-    boolean hasReadPermission(@Param("user") User user, @Param("folderPath") String folderPath);
-
-    // Sprawdź czy istnieje uprawnienie do zapisu dla danego folderu
-    @Query("SELECT CASE WHEN COUNT(fp) > 0 THEN true ELSE false END FROM FolderPermission fp " +
-            "WHERE fp.user = :user AND fp.canWrite = true AND " +
-            "(" +
-            "   fp.folderPath = :folderPath OR " +  // dokładne dopasowanie
-            "   (fp.folderPath = '' AND fp.includeSubfolders = true) OR " +  // uprawnienie do folderu głównego z podfolderami
-            "   (:folderPath LIKE CONCAT(fp.folderPath, '/%') AND fp.includeSubfolders = true)" +  // podfolder
-            ")")
-    boolean hasWritePermission(@Param("user") User user, @Param("folderPath") String folderPath);
-
-    // Sprawdź czy istnieje uprawnienie do usuwania dla danego folderu
-    @Query("SELECT CASE WHEN COUNT(fp) > 0 THEN true ELSE false END FROM FolderPermission fp " +
-            "WHERE fp.user = :user AND fp.canDelete = true AND " +
-            "(" +
-            "   fp.folderPath = :folderPath OR " +  // dokładne dopasowanie
-            "   (fp.folderPath = '' AND fp.includeSubfolders = true) OR " +  // uprawnienie do folderu głównego z podfolderami
-            "   (:folderPath LIKE CONCAT(fp.folderPath, '/%') AND fp.includeSubfolders = true)" +  // podfolder
-            ")")
-    boolean hasDeletePermission(@Param("user") User user, @Param("folderPath") String folderPath);
-
-    // Sprawdź czy istnieje uprawnienie do pobierania dla danego folderu
-    @Query("SELECT CASE WHEN COUNT(fp) > 0 THEN true ELSE false END FROM FolderPermission fp " +
-            "WHERE fp.user = :user AND fp.canDownload = true AND " +
-            "(" +
-            "   fp.folderPath = :folderPath OR " +  // dokładne dopasowanie
-            "   (fp.folderPath = '' AND fp.includeSubfolders = true) OR " +  // uprawnienie do folderu głównego z podfolderami
-            "   (:folderPath LIKE CONCAT(fp.folderPath, '/%') AND fp.includeSubfolders = true)" +  // podfolder
-            ")")
-    boolean hasDownloadPermission(@Param("user") User user, @Param("folderPath") String folderPath);
-
     // Znajdź wszystkie uprawnienia dla danego folderu
     List<FolderPermission> findByFolderPath(String folderPath);
 
-    // Sprawdź czy istnieje uprawnienie dla danego folderu z określonym typem
-    boolean existsByFolderPathAndPermissionType(String folderPath, String permissionType);
-
     // Znajdź wszystkie uprawnienia określonego typu
     List<FolderPermission> findByPermissionType(String permissionType);
 }
\ No newline at end of file
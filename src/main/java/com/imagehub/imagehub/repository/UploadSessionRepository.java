@@ -0,0 +1,33 @@
+package com.imagehub.imagehub.repository;
+
+import com.imagehub.imagehub.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Znajdź sesje nieaktywne od podanego czasu (do usunięcia)
+    List<UploadSession> findByUpdatedAtBefore(long updatedAt);
+
+    // Oznacz fragment jako odebrany - pojedynczy INSERT, więc równolegle wysyłane fragmenty
+    // tej samej sesji nie nadpisują sobie nawzajem listy odebranych. Kontekst utrwalania jest czyszczony,
+    // aby kolejne findById w tym samym żądaniu (open-in-view) wczytało sesję z nowym fragmentem
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO upload_session_chunks (session_id, chunk_index) VALUES (:sessionId, :chunkIndex)",
+            nativeQuery = true)
+    void markChunkReceived(@Param("sessionId") String sessionId, @Param("chunkIndex") int chunkIndex);
+
+    // Zaktualizuj czas ostatniej aktywności sesji
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.updatedAt = :updatedAt WHERE s.id = :id")
+    void touch(@Param("id") String id, @Param("updatedAt") long updatedAt);
+}
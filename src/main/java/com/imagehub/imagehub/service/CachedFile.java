@@ -0,0 +1,49 @@
+package com.imagehub.imagehub.service;
+
+import java.nio.file.Path;
+
+/**
+ * Plik z lokalnego cache'a treści wraz z walidatorami z Nextcloud
+ */
+public final class CachedFile {
+
+    private final Path file;
+    private final long size;
+    private final String etag;
+    private final long lastModified;
+    private final String contentType;
+
+    CachedFile(Path file, long size, String etag, long lastModified, String contentType) {
+        this.file = file;
+        this.size = size;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Czas modyfikacji w Nextcloud (ms) lub -1, jeśli nieznany
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Typ zawartości z Nextcloud lub null
+     */
+    public String getContentType() {
+        return contentType;
+    }
+}
@@ -0,0 +1,269 @@
+package com.imagehub.imagehub.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lokalny dyskowy cache treści często pobieranych plików (read-through).
+ *
+ * Wpis jest przypisany do ścieżki i ETagu z Nextcloud - plik na dysku nazywa się skrótem z obu,
+ * więc nowa wersja pliku nigdy nie nadpisuje treści, która może być właśnie wysyłana.
+ * Po upływie okna świeżości wpis jest potwierdzany warunkowym żądaniem (If-None-Match) zamiast
+ * ponownego pobrania. Wpisy są usuwane od najdawniej używanych po przekroczeniu limitu rozmiaru.
+ * Indeks jest tylko w pamięci - pliki pozostałe po poprzednim uruchomieniu są usuwane przy starcie.
+ */
+class FileBlobCache {
+    private static final Logger logger = LoggerFactory.getLogger(FileBlobCache.class);
+
+    private static final String FILE_SUFFIX = ".blob";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // Pliki wpisów użytych niedawno nie są kasowane - mogą być właśnie wysyłane (sendfile otwiera plik
+    // po obsłużeniu żądania). Dotyczy to usuwania z braku miejsca, zastąpienia nową wersją i unieważnienia.
+    private static final long EVICTION_GRACE_MS = 60_000;
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final long maxEntryBytes;
+    private final long revalidateAfterMs;
+    private final Map<String, Blob> blobs = new ConcurrentHashMap<>();
+    // Pliki usuniętych wpisów czekające na skasowanie - plik -> czas, po którym można go skasować
+    private final Map<Path, Long> pendingDeletes = new ConcurrentHashMap<>();
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    FileBlobCache(Path directory, long maxSizeBytes, long maxEntryBytes, long revalidateAfterMs) throws IOException {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxSizeBytes);
+        this.revalidateAfterMs = Math.max(0, revalidateAfterMs);
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * Wpis dla ścieżki (bez sprawdzania świeżości) lub null
+     */
+    Blob find(String path) {
+        Blob blob = blobs.get(path);
+        if (blob != null && !Files.isRegularFile(blob.file())) {
+            remove(path, blob);
+            return null;
+        }
+        return blob;
+    }
+
+    /**
+     * Czy wpis można wysłać bez potwierdzenia w Nextcloud
+     */
+    boolean isFresh(Blob blob) {
+        return System.currentTimeMillis() - blob.validatedAt() < revalidateAfterMs;
+    }
+
+    /**
+     * Wysłanie wpisu bez pobierania treści z Nextcloud (świeży lub potwierdzony odpowiedzią 304)
+     */
+    Blob recordHit(Blob blob, boolean revalidated) {
+        long now = System.currentTimeMillis();
+        Blob touched = new Blob(blob.path(), blob.etag(), blob.file(), blob.size(), blob.contentType(),
+                blob.lastModified(), revalidated ? now : blob.validatedAt(), now);
+        blobs.replace(blob.path(), blob, touched);
+        (revalidated ? revalidations : hits).incrementAndGet();
+        bytesSaved.addAndGet(blob.size());
+        return touched;
+    }
+
+    /**
+     * Zapisz treść pobraną z Nextcloud; null, jeśli plik przekracza limit wpisu
+     * (strumień jest wtedy porzucany bez doczytywania)
+     */
+    Blob store(String path, String etag, String contentType, long lastModified, InputStream in) throws IOException {
+        misses.incrementAndGet();
+        Path tempFile = Files.createTempFile(directory, "download-", ".tmp");
+        try {
+            long size = 0;
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxEntryBytes) {
+                        return null;
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            Path file = directory.resolve(key(path, etag) + FILE_SUFFIX);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Ta sama wersja mogła wcześniej zostać unieważniona - nowego pliku nie wolno skasować
+            pendingDeletes.remove(file);
+            long now = System.currentTimeMillis();
+            Blob blob = new Blob(path, etag, file, size, contentType, lastModified, now, now);
+            Blob previous = blobs.put(path, blob);
+            totalSize.addAndGet(size);
+            if (previous != null) {
+                totalSize.addAndGet(-previous.size());
+                if (!previous.file().equals(file)) {
+                    deleteLater(previous);
+                }
+            }
+            evictIfNeeded();
+            purgeDeleted();
+            return blob;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Usuń wpis pliku lub wszystkie wpisy w folderze (po zmianie wykonanej przez ImageHub)
+     */
+    void invalidate(String path) {
+        String folderPrefix = path.endsWith("/") ? path : path + "/";
+        for (Blob blob : blobs.values()) {
+            if (blob.path().equals(path) || blob.path().startsWith(folderPrefix)) {
+                remove(blob.path(), blob);
+            }
+        }
+        purgeDeleted();
+    }
+
+    private void remove(String path, Blob blob) {
+        if (!blobs.remove(path, blob)) {
+            return;
+        }
+        totalSize.addAndGet(-blob.size());
+        deleteLater(blob);
+    }
+
+    /**
+     * Skasuj plik usuniętego wpisu - od razu, jeśli wpis nie był używany w oknie EVICTION_GRACE_MS,
+     * a w przeciwnym razie po jego upływie (wysyłanie poprzedniej wersji może jeszcze trwać)
+     */
+    private void deleteLater(Blob blob) {
+        long deleteAfter = blob.lastAccess() + EVICTION_GRACE_MS;
+        if (deleteAfter <= System.currentTimeMillis()) {
+            delete(blob.file());
+        } else {
+            pendingDeletes.merge(blob.file(), deleteAfter, Math::max);
+        }
+    }
+
+    /**
+     * Skasuj pliki, których okno EVICTION_GRACE_MS już minęło
+     */
+    private void purgeDeleted() {
+        if (pendingDeletes.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        pendingDeletes.forEach((file, deleteAfter) -> {
+            if (deleteAfter <= now && pendingDeletes.remove(file, deleteAfter)) {
+                delete(file);
+            }
+        });
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Nie można usunąć pliku cache'a {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Usuń najdawniej używane wpisy, aż łączny rozmiar zmieści się w limicie
+     */
+    private synchronized void evictIfNeeded() {
+        if (totalSize.get() <= maxSizeBytes) {
+            return;
+        }
+
+        long graceLimit = System.currentTimeMillis() - EVICTION_GRACE_MS;
+        List<Blob> byLastAccess = new ArrayList<>(blobs.values());
+        byLastAccess.sort(Comparator.comparingLong(Blob::lastAccess));
+        for (Blob blob : byLastAccess) {
+            if (totalSize.get() <= maxSizeBytes || blob.lastAccess() > graceLimit) {
+                break;
+            }
+            remove(blob.path(), blob);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String key(String path, String etag) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(path.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(etag.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 niedostępny", e);
+        }
+    }
+
+    Map<String, Object> getMetrics() {
+        long served = hits.get() + revalidations.get();
+        long requests = served + misses.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", blobs.size());
+        metrics.put("sizeBytes", totalSize.get());
+        metrics.put("maxSizeBytes", maxSizeBytes);
+        metrics.put("hits", hits.get());
+        metrics.put("revalidations", revalidations.get());
+        metrics.put("misses", misses.get());
+        metrics.put("hitRatio", requests > 0 ? (double) served / requests : 0.0);
+        metrics.put("bytesSaved", bytesSaved.get());
+        metrics.put("evictions", evictions.get());
+        metrics.put("pendingDeletes", pendingDeletes.size());
+        return metrics;
+    }
+
+    /**
+     * Wpis cache'a - treść pliku w wersji o podanym ETagu
+     *
+     * @param validatedAt czas ostatniego potwierdzenia ETagu w Nextcloud
+     * @param lastAccess  czas ostatniego użycia (kolejność usuwania)
+     */
+    record Blob(String path, String etag, Path file, long size, String contentType, long lastModified,
+                long validatedAt, long lastAccess) {
+
+        CachedFile toCachedFile() {
+            return new CachedFile(file, size, etag, lastModified, contentType);
+        }
+    }
+}
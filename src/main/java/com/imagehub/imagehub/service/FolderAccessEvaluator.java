@@ -0,0 +1,109 @@
+package com.imagehub.imagehub.service;
+
+import com.imagehub.imagehub.model.PermissionConstants;
+import com.imagehub.imagehub.model.User;
+
+import java.util.Set;
+
+/**
+ * Uprawnienia użytkownika do folderów na potrzeby jednego żądania.
+ *
+ * Listowanie drzewa folderów sprawdza uprawnienia i oznaczenia produktów dla każdego elementu -
+ * zamiast zapytań do bazy dla każdej ścieżki skompilowane uprawnienia użytkownika i zbiór folderów
+ * "dzieci jako produkty" są pobierane jednorazowo, a sprawdzenia są wykonywane w pamięci.
+ * Reguły odpowiadają metodom {@link FolderPermissionService}. Obiekt nie jest odświeżany -
+ * należy go używać tylko w obrębie jednego żądania.
+ */
+public final class FolderAccessEvaluator {
+
+    private final User user;
+    private final boolean admin;
+    private final FolderPermissionTrie permissions;
+    private final Set<String> productParentFolders;
+
+    FolderAccessEvaluator(User user, FolderPermissionTrie permissions, Set<String> productParentFolders) {
+        this.user = user;
+        this.admin = user.getRole() != null && "ADMIN".equals(user.getRole().getName());
+        this.permissions = permissions;
+        this.productParentFolders = productParentFolders;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Odpowiednik {@link FolderPermissionService#canUserReadFolder}
+     */
+    public boolean canRead(String folderPath) {
+        return admin
+                || permissions.allows(folderPath, FolderPermissionTrie.READ)
+                || canWrite(folderPath)
+                || user.hasPermission(PermissionConstants.FILES_READ);
+    }
+
+    /**
+     * Odpowiednik {@link FolderPermissionService#canUserWriteFolder}
+     */
+    public boolean canWrite(String folderPath) {
+        return admin
+                || permissions.allows(folderPath, FolderPermissionTrie.WRITE)
+                || user.hasPermission(PermissionConstants.FILES_WRITE);
+    }
+
+    /**
+     * Odpowiednik {@link FolderPermissionService#canUserDeleteFolder}
+     */
+    public boolean canDelete(String folderPath) {
+        return admin
+                || permissions.allows(folderPath, FolderPermissionTrie.DELETE)
+                || user.hasPermission(PermissionConstants.FILES_DELETE);
+    }
+
+    /**
+     * Odpowiednik {@link FolderPermissionService#canUserDownloadFolder}
+     */
+    public boolean canDownload(String folderPath) {
+        if (admin || permissions.allows(folderPath, FolderPermissionTrie.DOWNLOAD)) {
+            return true;
+        }
+
+        if (canRead(folderPath)) {
+            // Odczyt pozwala pobierać, chyba że pobieranie jest jawnie wyłączone w uprawnieniu do folderu
+            return !permissions.deniesDirectly(folderPath, FolderPermissionTrie.DOWNLOAD);
+        }
+
+        return user.hasPermission(PermissionConstants.FILES_DOWNLOAD);
+    }
+
+    /**
+     * Odpowiednik {@link FolderPermissionService#hasChildrenAsProducts}
+     */
+    public boolean hasChildrenAsProducts(String folderPath) {
+        return productParentFolders.contains(folderPath);
+    }
+
+    /**
+     * Odpowiednik {@link FolderPermissionService#isChildOfFolderWithProductChildren}
+     */
+    public boolean isChildOfFolderWithProductChildren(String folderPath) {
+        if (folderPath == null || folderPath.isEmpty() || productParentFolders.isEmpty()) {
+            return false;
+        }
+
+        String[] segments = folderPath.split("/");
+        StringBuilder currentPath = new StringBuilder();
+        for (int i = 0; i < segments.length - 1; i++) {
+            if (!segments[i].isEmpty()) {
+                if (currentPath.length() > 0) {
+                    currentPath.append("/");
+                }
+                currentPath.append(segments[i]);
+                if (productParentFolders.contains(currentPath.toString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -7,11 +7,18 @@ import com.imagehub.imagehub.repository.FolderPermissionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static com.imagehub.imagehub.model.FolderPermission.PERMISSION_TYPE_CHILDREN_AS_PRODUCTS;
@@ -22,13 +29,118 @@ public class FolderPermissionService {
     private static final Logger logger = LoggerFactory.getLogger(FolderPermissionService.class);
 
     private final FolderPermissionRepository folderPermissionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Skompilowane uprawnienia użytkowników (według id) i foldery "dzieci jako produkty" -
+    // unieważniane zdarzeniem FolderPermissionsChangedEvent po zatwierdzeniu zmiany uprawnień
+    private final Map<Long, FolderPermissionTrie> permissionTries = new ConcurrentHashMap<>();
+    private volatile Set<String> productParentFolders;
+    // Zwiększany przy każdym unieważnieniu - wynik wczytany przed zmianą nie trafia do cache'a
+    private long permissionsGeneration;
+    // Klucz zasobu transakcji, która zmieniła uprawnienia - do jej zakończenia cache jest pomijany
+    private final Object pendingChangesKey = new Object();
 
     @Autowired
-    public FolderPermissionService(FolderPermissionRepository folderPermissionRepository) {
+    public FolderPermissionService(FolderPermissionRepository folderPermissionRepository,
+                                   ApplicationEventPublisher eventPublisher) {
         this.folderPermissionRepository = folderPermissionRepository;
+        this.eventPublisher = eventPublisher;
         logger.info("🔹 Folder permission service initialized");
     }
 
+    /**
+     * Skompilowane uprawnienia użytkownika - wczytywane z bazy tylko przy pierwszym użyciu po zmianie
+     */
+    private FolderPermissionTrie getPermissionTrie(User user) {
+        if (changedInCurrentTransaction()) {
+            return new FolderPermissionTrie(folderPermissionRepository.findByUser(user));
+        }
+
+        FolderPermissionTrie trie = permissionTries.get(user.getId());
+        if (trie != null) {
+            return trie;
+        }
+
+        long generation;
+        synchronized (permissionTries) {
+            generation = permissionsGeneration;
+        }
+        trie = new FolderPermissionTrie(folderPermissionRepository.findByUser(user));
+        synchronized (permissionTries) {
+            if (generation == permissionsGeneration) {
+                permissionTries.put(user.getId(), trie);
+            }
+        }
+        return trie;
+    }
+
+    /**
+     * Ścieżki folderów oznaczonych jako "dzieci jako produkty" (wszystkich użytkowników)
+     */
+    private Set<String> getProductParentFolders() {
+        if (changedInCurrentTransaction()) {
+            return Set.copyOf(getProductFolders());
+        }
+
+        Set<String> folders = productParentFolders;
+        if (folders != null) {
+            return folders;
+        }
+
+        long generation;
+        synchronized (permissionTries) {
+            generation = permissionsGeneration;
+        }
+        folders = Set.copyOf(getProductFolders());
+        synchronized (permissionTries) {
+            if (generation == permissionsGeneration) {
+                productParentFolders = folders;
+            }
+        }
+        return folders;
+    }
+
+    /**
+     * Czy bieżąca transakcja zmieniła uprawnienia - cache jest unieważniany dopiero po zatwierdzeniu,
+     * więc do tego czasu sprawdzenia w tej transakcji wczytują niezatwierdzony stan z bazy
+     */
+    private boolean changedInCurrentTransaction() {
+        return TransactionSynchronizationManager.hasResource(pendingChangesKey);
+    }
+
+    /**
+     * Opublikuj zmianę uprawnień użytkownika; w transakcji oznacz ją do czasu zakończenia transakcji
+     */
+    private void publishPermissionsChanged(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !changedInCurrentTransaction()) {
+            TransactionSynchronizationManager.bindResource(pendingChangesKey, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingChangesKey);
+                }
+            });
+        }
+        eventPublisher.publishEvent(new FolderPermissionsChangedEvent(userId));
+    }
+
+    /**
+     * Unieważnij skompilowane uprawnienia po zatwierdzeniu zmiany (lub od razu, gdy zmiana była poza transakcją)
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionsChanged(FolderPermissionsChangedEvent event) {
+        synchronized (permissionTries) {
+            permissionsGeneration++;
+            if (event.userId() != null) {
+                permissionTries.remove(event.userId());
+            } else {
+                permissionTries.clear();
+            }
+            productParentFolders = null;
+        }
+        logger.debug("Invalidated compiled folder permissions for user id {}", event.userId());
+    }
+
     /**
      * Pobiera wszystkie uprawnienia dla danego użytkownika
      */
@@ -36,6 +148,14 @@ public class FolderPermissionService {
         return folderPermissionRepository.findByUser(user);
     }
 
+    /**
+     * Wczytaj uprawnienia użytkownika i foldery "dzieci jako produkty" jednorazowo,
+     * aby sprawdzać wiele ścieżek w jednym żądaniu bez kolejnych zapytań do bazy
+     */
+    public FolderAccessEvaluator createEvaluator(User user) {
+        return new FolderAccessEvaluator(user, getPermissionTrie(user), getProductParentFolders());
+    }
+
     /**
      * Sprawdza czy użytkownik ma dostęp do odczytu folderu,
      * uwzględniając zarówno uprawnienia z roli jak i konkretne uprawnienia do folderów
@@ -47,7 +167,7 @@ public class FolderPermissionService {
         }
 
         // Sprawdź bezpośrednie uprawnienia do folderu
-        if (folderPermissionRepository.hasReadPermission(user, folderPath)) {
+        if (getPermissionTrie(user).allows(folderPath, FolderPermissionTrie.READ)) {
             logger.debug("User {} has direct read permission for {}", user.getUsername(), folderPath);
             return true;
         }
@@ -79,7 +199,7 @@ public class FolderPermissionService {
         }
 
         // Sprawdź bezpośrednie uprawnienia do folderu
-        if (folderPermissionRepository.hasWritePermission(user, folderPath)) {
+        if (getPermissionTrie(user).allows(folderPath, FolderPermissionTrie.WRITE)) {
             logger.debug("User {} has direct write permission for {}", user.getUsername(), folderPath);
             return true;
         }
@@ -95,7 +215,7 @@ public class FolderPermissionService {
             logger.debug("User {} has files_write_own permission, checking if folder is assigned",
                     user.getUsername());
             // Sprawdź czy to jest folder, do którego użytkownik ma przypisane uprawnienia
-            return folderPermissionRepository.hasWritePermission(user, folderPath);
+            return getPermissionTrie(user).allows(folderPath, FolderPermissionTrie.WRITE);
         }
 
         return false;
@@ -112,7 +232,7 @@ public class FolderPermissionService {
         }
 
         // Sprawdź bezpośrednie uprawnienia do folderu
-        if (folderPermissionRepository.hasDeletePermission(user, folderPath)) {
+        if (getPermissionTrie(user).allows(folderPath, FolderPermissionTrie.DELETE)) {
             logger.debug("User {} has direct delete permission for {}", user.getUsername(), folderPath);
             return true;
         }
@@ -128,7 +248,7 @@ public class FolderPermissionService {
             logger.debug("User {} has files_delete_own permission, checking if folder is assigned",
                     user.getUsername());
             // Sprawdź czy to jest folder, do którego użytkownik ma przypisane uprawnienia
-            return folderPermissionRepository.hasDeletePermission(user, folderPath);
+            return getPermissionTrie(user).allows(folderPath, FolderPermissionTrie.DELETE);
         }
 
         return false;
@@ -150,11 +270,11 @@ public class FolderPermissionService {
             permission.setCanDelete(canDelete);
             permission.setIncludeSubfolders(includeSubfolders);
             logger.info("Updated permissions for user {} on folder {}", user.getUsername(), folderPath);
-            return folderPermissionRepository.save(permission);
+            return saveAndPublish(permission);
         } else {
             FolderPermission newPermission = new FolderPermission(folderPath, user, canRead, canWrite, canDelete, includeSubfolders);
             logger.info("Created new permissions for user {} on folder {}", user.getUsername(), folderPath);
-            return folderPermissionRepository.save(newPermission);
+            return saveAndPublish(newPermission);
         }
     }
 
@@ -163,10 +283,21 @@ public class FolderPermissionService {
      */
     @Transactional
     public void removePermission(Long permissionId) {
+        Optional<FolderPermission> permission = folderPermissionRepository.findById(permissionId);
         folderPermissionRepository.deleteById(permissionId);
+        permission.ifPresent(removed -> publishPermissionsChanged(removed.getUser().getId()));
         logger.info("Removed permission with ID {}", permissionId);
     }
 
+    /**
+     * Zapisz uprawnienie i unieważnij skompilowane uprawnienia jego użytkownika
+     */
+    private FolderPermission saveAndPublish(FolderPermission permission) {
+        FolderPermission saved = folderPermissionRepository.save(permission);
+        publishPermissionsChanged(saved.getUser().getId());
+        return saved;
+    }
+
     /**
      * Pobierz wszystkie uprawnienia dla określonego folderu
      */
@@ -178,7 +309,7 @@ public class FolderPermissionService {
      * Zapisywanie określonego uprawnienia
      */
     public FolderPermission savePermission(FolderPermission permission) {
-        return folderPermissionRepository.save(permission);
+        return saveAndPublish(permission);
     }
 
     /**
@@ -209,7 +340,7 @@ public class FolderPermissionService {
      * Sprawdź, czy folder jest rodzicem, którego dzieci są produktami
      */
     public boolean hasChildrenAsProducts(String folderPath) {
-        return folderPermissionRepository.existsByFolderPathAndPermissionType(folderPath, PERMISSION_TYPE_CHILDREN_AS_PRODUCTS);
+        return getProductParentFolders().contains(folderPath);
     }
 
     /**
@@ -308,13 +439,13 @@ public class FolderPermissionService {
             permission.setCanDownload(canDownload); // Dodajemy ustawienie canDownload
             permission.setIncludeSubfolders(includeSubfolders);
             permission.setPermissionType(permissionType);
-            return folderPermissionRepository.save(permission);
+            return saveAndPublish(permission);
         } else {
             // Utwórz nowe uprawnienie
             FolderPermission permission = new FolderPermission(
                     folderPath, user, canRead, canWrite, canDelete, canDownload, includeSubfolders, permissionType
             );
-            return folderPermissionRepository.save(permission);
+            return saveAndPublish(permission);
         }
     }
 
@@ -329,7 +460,7 @@ public class FolderPermissionService {
         }
 
         // Sprawdź bezpośrednie uprawnienia do folderu
-        if (folderPermissionRepository.hasDownloadPermission(user, folderPath)) {
+        if (getPermissionTrie(user).allows(folderPath, FolderPermissionTrie.DOWNLOAD)) {
             logger.debug("User {} has direct download permission for {}", user.getUsername(), folderPath);
             return true;
         }
@@ -338,8 +469,7 @@ public class FolderPermissionService {
         // (chyba że ma jawnie wyłączone pobieranie w uprawnieniach do folderu)
         if (canUserReadFolder(user, folderPath)) {
             // Sprawdź, czy nie ma explicite wyłączonego pobierania
-            Optional<FolderPermission> directPermission = folderPermissionRepository.findByFolderPathAndUser(folderPath, user);
-            if (directPermission.isPresent() && !directPermission.get().isCanDownload()) {
+            if (getPermissionTrie(user).deniesDirectly(folderPath, FolderPermissionTrie.DOWNLOAD)) {
                 logger.debug("User {} has read permission but download is explicitly disabled for {}",
                         user.getUsername(), folderPath);
                 return false;
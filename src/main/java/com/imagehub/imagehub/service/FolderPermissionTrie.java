@@ -0,0 +1,93 @@
+package com.imagehub.imagehub.service;
+
+import com.imagehub.imagehub.model.FolderPermission;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uprawnienia użytkownika do folderów skompilowane do drzewa segmentów ścieżki.
+ *
+ * Węzeł odpowiada folderowi, dla którego istnieje uprawnienie (lub jego przodkowi) i przechowuje
+ * znaczniki odczytu, zapisu, usuwania i pobierania oraz dziedziczenie przez podfoldery.
+ * Sprawdzenie ścieżki to przejście od korzenia w głąb - O(głębokość) bez zapytań do bazy.
+ * Drzewo jest niezmienne po zbudowaniu i może być współdzielone między wątkami.
+ */
+final class FolderPermissionTrie {
+
+    static final int READ = 1;
+    static final int WRITE = 1 << 1;
+    static final int DELETE = 1 << 2;
+    static final int DOWNLOAD = 1 << 3;
+
+    private final Node root = new Node();
+
+    FolderPermissionTrie(List<FolderPermission> permissions) {
+        for (FolderPermission permission : permissions) {
+            Node node = root;
+            String folderPath = permission.getFolderPath();
+            if (!folderPath.isEmpty()) {
+                for (String segment : folderPath.split("/", -1)) {
+                    node = node.children.computeIfAbsent(segment, key -> new Node());
+                }
+            }
+            node.granted = true;
+            node.flags = (permission.isCanRead() ? READ : 0)
+                    | (permission.isCanWrite() ? WRITE : 0)
+                    | (permission.isCanDelete() ? DELETE : 0)
+                    | (permission.isCanDownload() ? DOWNLOAD : 0);
+            node.includeSubfolders = permission.isIncludeSubfolders();
+        }
+    }
+
+    /**
+     * Czy uprawnienie do folderu (dokładne lub odziedziczone po folderze nadrzędnym
+     * z podfolderami) ma podany znacznik
+     */
+    boolean allows(String folderPath, int flag) {
+        Node node = root;
+        if (!folderPath.isEmpty()) {
+            int start = 0;
+            while (true) {
+                if (node.granted && node.includeSubfolders && (node.flags & flag) != 0) {
+                    return true;
+                }
+                int slash = folderPath.indexOf('/', start);
+                node = node.children.get(slash == -1 ? folderPath.substring(start) : folderPath.substring(start, slash));
+                if (node == null) {
+                    return false;
+                }
+                if (slash == -1) {
+                    break;
+                }
+                start = slash + 1;
+            }
+        }
+        return node.granted && (node.flags & flag) != 0;
+    }
+
+    /**
+     * Czy istnieje uprawnienie bezpośrednio do folderu, które nie ma podanego znacznika
+     * (np. pobieranie jawnie wyłączone)
+     */
+    boolean deniesDirectly(String folderPath, int flag) {
+        Node node = root;
+        if (!folderPath.isEmpty()) {
+            for (String segment : folderPath.split("/", -1)) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    return false;
+                }
+            }
+        }
+        return node.granted && (node.flags & flag) == 0;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>(4);
+        private boolean granted;
+        private int flags;
+        private boolean includeSubfolders;
+    }
+}
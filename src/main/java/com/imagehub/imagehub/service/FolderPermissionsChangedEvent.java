@@ -0,0 +1,10 @@
+package com.imagehub.imagehub.service;
+
+/**
+ * Zdarzenie publikowane po zmianie uprawnień do folderów - unieważnia skompilowane uprawnienia
+ * użytkownika i zbiór folderów "dzieci jako produkty"
+ *
+ * @param userId id użytkownika, którego uprawnienia się zmieniły
+ */
+public record FolderPermissionsChangedEvent(Long userId) {
+}
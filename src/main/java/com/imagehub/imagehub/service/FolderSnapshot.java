@@ -0,0 +1,211 @@
+package com.imagehub.imagehub.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Niemodyfikowalny snapshot struktury folderów Nextcloud.
+ * Przechowuje zawartość folderów oraz ostatnio widziane ETagi katalogów,
+ * które pozwalają pominąć ponowne listowanie niezmienionych poddrzew.
+ *
+ * Snapshot jest drzewem węzłów folderów współdzielonym między wersjami: podmiana poddrzewa
+ * ({@link #withSubtree}) kopiuje tylko węzły na ścieżce od korzenia do podmienianego folderu,
+ * więc odświeżenie jednego folderu nie kopiuje całego drzewa.
+ */
+final class FolderSnapshot {
+
+    static final FolderSnapshot EMPTY = new FolderSnapshot(null);
+
+    // Korzeń drzewa (ścieżka "") lub null dla pustego snapshotu
+    private final Node root;
+
+    private FolderSnapshot(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Zamroź zbudowane mapy do postaci niemodyfikowalnego snapshotu
+     */
+    static FolderSnapshot freeze(Map<String, List<NextcloudResource>> folders, Map<String, String> etags) {
+        return new FolderSnapshot(build(folders, etags).freeze());
+    }
+
+    /**
+     * Nowy snapshot, w którym poddrzewo folderu (wraz z nim samym) jest zastąpione podanymi folderami.
+     * Wszystkie podane ścieżki muszą leżeć w poddrzewie folderu.
+     */
+    FolderSnapshot withSubtree(String folderPath, Map<String, List<NextcloudResource>> folders,
+                               Map<String, String> etags) {
+        Node replacement = build(folders, etags).find(folderPath);
+        return new FolderSnapshot(replace(root, segments(folderPath), 0, replacement));
+    }
+
+    List<NextcloudResource> get(String path) {
+        Node node = find(path);
+        return node != null ? node.resources : null;
+    }
+
+    boolean contains(String path) {
+        return get(path) != null;
+    }
+
+    String getEtag(String path) {
+        Node node = find(path);
+        return node != null ? node.etag : null;
+    }
+
+    /**
+     * Liczba folderów z zapisaną zawartością
+     */
+    int size() {
+        return root != null ? root.size : 0;
+    }
+
+    /**
+     * Odwiedź wszystkie foldery z zapisaną zawartością
+     */
+    void forEachFolder(FolderVisitor visitor) throws IOException {
+        if (root != null) {
+            visit(root, visitor);
+        }
+    }
+
+    @FunctionalInterface
+    interface FolderVisitor {
+        void visit(String path, String etag, List<NextcloudResource> resources) throws IOException;
+    }
+
+    private static void visit(Node node, FolderVisitor visitor) throws IOException {
+        if (node.resources != null) {
+            visitor.visit(node.path, node.etag, node.resources);
+        }
+        for (Node child : node.children.values()) {
+            visit(child, visitor);
+        }
+    }
+
+    private Node find(String path) {
+        Node node = root;
+        if (node == null || path.isEmpty()) {
+            return node;
+        }
+
+        int start = 0;
+        while (node != null) {
+            int slash = path.indexOf('/', start);
+            node = node.children.get(slash == -1 ? path.substring(start) : path.substring(start, slash));
+            if (slash == -1) {
+                return node;
+            }
+            start = slash + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Skopiuj węzły na ścieżce do podmienianego poddrzewa; pozostałe węzły są współdzielone
+     */
+    private static Node replace(Node node, String[] segments, int index, Node replacement) {
+        if (index == segments.length) {
+            return replacement;
+        }
+
+        String path = String.join("/", Arrays.copyOf(segments, index));
+        Node current = node != null ? node : new Node(path, null, null, Map.of());
+        Node child = replace(current.children.get(segments[index]), segments, index + 1, replacement);
+
+        Map<String, Node> children = new HashMap<>(current.children);
+        if (child != null) {
+            children.put(segments[index], child);
+        } else {
+            children.remove(segments[index]);
+        }
+        if (current.resources == null && current.etag == null && children.isEmpty()) {
+            return null;
+        }
+        return new Node(current.path, current.resources, current.etag, Collections.unmodifiableMap(children));
+    }
+
+    private static String[] segments(String path) {
+        return path.isEmpty() ? new String[0] : path.split("/", -1);
+    }
+
+    /**
+     * Zbuduj modyfikowalne drzewo z płaskich map ścieżek
+     */
+    private static Builder build(Map<String, List<NextcloudResource>> folders, Map<String, String> etags) {
+        Builder root = new Builder("", true);
+        folders.forEach((path, resources) -> root.node(path).resources = List.copyOf(resources));
+        etags.forEach((path, etag) -> root.node(path).etag = etag);
+        return root;
+    }
+
+    /**
+     * Węzeł folderu - niezmienny po utworzeniu
+     *
+     * @param resources zawartość folderu lub null, jeśli węzeł jest tylko przodkiem zapisanych folderów
+     * @param size      liczba folderów z zawartością w poddrzewie
+     */
+    private record Node(String path, List<NextcloudResource> resources, String etag, Map<String, Node> children,
+                        int size) {
+
+        private Node(String path, List<NextcloudResource> resources, String etag, Map<String, Node> children) {
+            this(path, resources, etag, children, (resources != null ? 1 : 0)
+                    + children.values().stream().mapToInt(Node::size).sum());
+        }
+    }
+
+    private static final class Builder {
+        private final String path;
+        private final boolean root;
+        private final Map<String, Builder> children = new HashMap<>();
+        private List<NextcloudResource> resources;
+        private String etag;
+
+        private Builder(String path, boolean root) {
+            this.path = path;
+            this.root = root;
+        }
+
+        /**
+         * Węzeł dla ścieżki (liczonej od korzenia), tworzony wraz z brakującymi przodkami
+         */
+        private Builder node(String nodePath) {
+            Builder node = this;
+            for (String segment : segments(nodePath)) {
+                Builder parent = node;
+                node = parent.children.computeIfAbsent(segment,
+                        name -> new Builder(parent.root ? name : parent.path + "/" + name, false));
+            }
+            return node;
+        }
+
+        private Node find(String nodePath) {
+            Builder node = this;
+            for (String segment : segments(nodePath)) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    return null;
+                }
+            }
+            return node.freezeOrNull();
+        }
+
+        private Node freezeOrNull() {
+            return resources == null && etag == null && children.isEmpty() ? null : freeze();
+        }
+
+        private Node freeze() {
+            if (children.isEmpty()) {
+                return new Node(path, resources, etag, Map.of());
+            }
+            Map<String, Node> frozenChildren = new HashMap<>(children.size());
+            children.forEach((name, child) -> frozenChildren.put(name, child.freeze()));
+            return new Node(path, resources, etag, Collections.unmodifiableMap(frozenChildren));
+        }
+    }
+}
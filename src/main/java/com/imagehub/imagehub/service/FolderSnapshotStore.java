@@ -0,0 +1,217 @@
+package com.imagehub.imagehub.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Zapis i odczyt snapshotu struktury folderów w kompaktowym formacie binarnym.
+ *
+ * Układ pliku:
+ * <pre>
+ * int    MAGIC
+ * int    FORMAT_VERSION
+ * long   czas zapisu snapshotu
+ * ...    dane (foldery, ETagi, wpisy)
+ * long   długość danych
+ * long   CRC32 danych
+ * </pre>
+ * Plik jest mapowany do pamięci przy starcie; błędna wersja, rozmiar lub suma kontrolna
+ * powodują odrzucenie pliku i zimną synchronizację.
+ */
+class FolderSnapshotStore {
+    private static final Logger logger = LoggerFactory.getLogger(FolderSnapshotStore.class);
+
+    static final int MAGIC = 0x49484653; // "IHFS"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    private static final int TRAILER_SIZE = 8 + 8;
+    private static final String FILE_NAME = "folder-snapshot.bin";
+
+    private final Path file;
+
+    FolderSnapshotStore(Path directory) {
+        this.file = directory.resolve(FILE_NAME);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Odczytany snapshot wraz z czasem jego zapisu
+     */
+    record Loaded(FolderSnapshot snapshot, long savedAt) {
+    }
+
+    /**
+     * Zapisz snapshot atomowo (plik tymczasowy + przeniesienie)
+     */
+    void save(FolderSnapshot snapshot, long savedAt) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(savedAt);
+                out.flush();
+
+                CRC32 crc = new CRC32();
+                CheckedOutputStream checked = new CheckedOutputStream(out, crc);
+                DataOutputStream payload = new DataOutputStream(checked);
+                writePayload(payload, snapshot);
+                payload.flush();
+
+                out.writeLong(payload.size());
+                out.writeLong(crc.getValue());
+            }
+
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Odczytaj snapshot z dysku; zwraca null, jeśli plik nie istnieje lub jest uszkodzony
+     */
+    Loaded load() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + TRAILER_SIZE || fileSize > Integer.MAX_VALUE) {
+                logger.warn("Nieprawidłowy rozmiar pliku snapshotu {} ({} bajtów), pomijanie", file, fileSize);
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+
+            if (buffer.getInt() != MAGIC) {
+                logger.warn("Plik {} nie jest snapshotem folderów, pomijanie", file);
+                return null;
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                logger.warn("Nieobsługiwana wersja snapshotu {} (oczekiwano {}), pomijanie", version, FORMAT_VERSION);
+                return null;
+            }
+            long savedAt = buffer.getLong();
+
+            int payloadEnd = (int) fileSize - TRAILER_SIZE;
+            long payloadLength = buffer.getLong(payloadEnd);
+            long expectedCrc = buffer.getLong(payloadEnd + 8);
+            if (payloadLength != payloadEnd - HEADER_SIZE) {
+                logger.warn("Niezgodna długość danych snapshotu {}, pomijanie", file);
+                return null;
+            }
+
+            ByteBuffer payload = buffer.slice(HEADER_SIZE, (int) payloadLength);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != expectedCrc) {
+                logger.warn("Niezgodna suma kontrolna snapshotu {}, pomijanie", file);
+                return null;
+            }
+
+            return new Loaded(readPayload(payload), savedAt);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            logger.warn("Nie można odczytać snapshotu {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writePayload(DataOutputStream out, FolderSnapshot snapshot) throws IOException {
+        out.writeInt(snapshot.size());
+
+        snapshot.forEachFolder((path, etag, resources) -> {
+            writeString(out, path);
+            writeString(out, etag);
+
+            out.writeInt(resources.size());
+            for (NextcloudResource resource : resources) {
+                writeString(out, resource.name());
+                out.writeBoolean(resource.directory());
+                writeString(out, resource.contentType());
+                out.writeLong(resource.lastModified());
+                out.writeLong(resource.contentLength());
+            }
+        });
+    }
+
+    private FolderSnapshot readPayload(ByteBuffer in) {
+        int folderCount = in.getInt();
+        Map<String, List<NextcloudResource>> folders = new HashMap<>(folderCount * 2);
+        Map<String, String> etags = new HashMap<>(folderCount * 2);
+
+        for (int i = 0; i < folderCount; i++) {
+            String path = readString(in);
+            String etag = readString(in);
+            if (etag != null) {
+                etags.put(path, etag);
+            }
+
+            int resourceCount = in.getInt();
+            List<NextcloudResource> resources = new ArrayList<>(resourceCount);
+            for (int j = 0; j < resourceCount; j++) {
+                String name = readString(in);
+                boolean isDirectory = in.get() != 0;
+                String contentType = readString(in);
+                long lastModified = in.getLong();
+                long contentLength = in.getLong();
+
+                // Wszystkie wpisy folderu współdzielą jedną instancję ścieżki rodzica
+                resources.add(new NextcloudResource(path, name, isDirectory,
+                        contentType != null ? contentType.intern() : null, lastModified, contentLength));
+            }
+            folders.put(path, resources);
+        }
+
+        return FolderSnapshot.freeze(folders, etags);
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,60 @@
+package com.imagehub.imagehub.service;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Przygotowany eksport folderu do ZIP: gotowe archiwum z cache'a albo archiwum
+ * generowane strumieniowo przy zapisie (i przy okazji zapisywane do cache'a).
+ */
+public final class FolderZipExport {
+
+    /**
+     * Zapisuje archiwum do strumienia wyjściowego
+     */
+    @FunctionalInterface
+    interface ArchiveWriter {
+        void write(OutputStream out) throws Exception;
+    }
+
+    private final Path cachedFile;
+    private final long size;
+    private final ArchiveWriter writer;
+
+    private FolderZipExport(Path cachedFile, long size, ArchiveWriter writer) {
+        this.cachedFile = cachedFile;
+        this.size = size;
+        this.writer = writer;
+    }
+
+    static FolderZipExport cached(Path cachedFile, long size) {
+        return new FolderZipExport(cachedFile, size, out -> Files.copy(cachedFile, out));
+    }
+
+    static FolderZipExport streamed(ArchiveWriter writer) {
+        return new FolderZipExport(null, -1, writer);
+    }
+
+    /**
+     * Czy archiwum jest gotowym plikiem z cache'a (można je wysłać bez kopiowania przez JVM)
+     */
+    public boolean isCached() {
+        return cachedFile != null;
+    }
+
+    public Path getCachedFile() {
+        return cachedFile;
+    }
+
+    /**
+     * Rozmiar archiwum w bajtach lub -1, jeśli jest generowane w trakcie zapisu
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public void writeTo(OutputStream out) throws Exception {
+        writer.write(out);
+    }
+}
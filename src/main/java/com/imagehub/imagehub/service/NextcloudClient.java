@@ -1,19 +1,63 @@
 package com.imagehub.imagehub.service;
 
 import com.github.sardine.Sardine;
-import com.github.sardine.SardineFactory;
 import com.github.sardine.DavResource;
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.impl.SardineImpl;
+import com.imagehub.imagehub.config.NextcloudProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
 @Getter
@@ -22,11 +66,143 @@ public class NextcloudClient {
 
     private final String baseUrl;
     private final Sardine sardine;
+    // Katalog tymczasowych uploadów protokołu chunked upload v2
+    @Getter(AccessLevel.NONE)
+    private final String uploadsUrl;
+    @Getter(AccessLevel.NONE)
+    private final TimedConnectionManager connectionManager;
+    // Klient do strumieniowego pobierania plików - współdzieli pulę połączeń z Sardine
+    @Getter(AccessLevel.NONE)
+    private final CloseableHttpClient streamingClient;
+    // Nagłówek z danymi logowania do Nextcloud - nie może być dostępny poza klientem
+    @Getter(AccessLevel.NONE)
+    private final String authorizationHeader;
 
     public NextcloudClient(String nextcloudUrl, String username, String password) {
+        this(nextcloudUrl, username, password, new NextcloudProperties.Http());
+    }
+
+    public NextcloudClient(String nextcloudUrl, String username, String password, NextcloudProperties.Http http) {
         this.baseUrl = nextcloudUrl + "/remote.php/dav/files/" + username + "/";
-        this.sardine = SardineFactory.begin(username, password);
-        logger.info("🔹 Nextcloud client initialized for {}", nextcloudUrl);
+        this.uploadsUrl = nextcloudUrl + "/remote.php/dav/uploads/" + username + "/";
+
+        // Pula połączeń współdzielona przez crawler, listowania, pobieranie i wysyłanie plików
+        this.connectionManager = new TimedConnectionManager();
+        connectionManager.setMaxTotal(http.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(http.getMaxConnectionsPerRoute());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(http.getConnectTimeoutMs())
+                .setSocketTimeout(http.getSocketTimeoutMs())
+                .setConnectionRequestTimeout(http.getConnectionRequestTimeoutMs())
+                .build();
+
+        long keepAliveMs = http.getKeepAliveMs();
+        // Keep-alive serwera jest respektowane, ale nie dłużej niż skonfigurowany limit
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMs) : keepAliveMs;
+        };
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS);
+
+        this.streamingClient = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .build();
+        this.authorizationHeader = "Basic " + Base64.getEncoder()
+                .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+
+        SardineImpl sardineImpl = new SardineImpl(builder, username, password);
+        if (http.isPreemptiveAuth()) {
+            try {
+                sardineImpl.enablePreemptiveAuthentication(URI.create(nextcloudUrl).toURL());
+            } catch (MalformedURLException | IllegalArgumentException e) {
+                logger.warn("Nie można włączyć uwierzytelniania z wyprzedzeniem dla {}: {}", nextcloudUrl, e.getMessage());
+            }
+        }
+        this.sardine = sardineImpl;
+
+        logger.info("🔹 Nextcloud client initialized for {} (pool: {} total, {} per route)",
+                nextcloudUrl, http.getMaxConnections(), http.getMaxConnectionsPerRoute());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            streamingClient.close();
+            sardine.shutdown();
+        } catch (IOException e) {
+            logger.warn("Błąd podczas zamykania klienta Nextcloud: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Metryki puli połączeń: wykorzystanie oraz czas oczekiwania na wolne połączenie
+     */
+    public Map<String, Object> getConnectionPoolMetrics() {
+        PoolStats stats = connectionManager.getTotalStats();
+        long leases = connectionManager.leases.get();
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("leased", stats.getLeased());
+        metrics.put("available", stats.getAvailable());
+        metrics.put("pending", stats.getPending());
+        metrics.put("max", stats.getMax());
+        metrics.put("utilization", stats.getMax() > 0 ? (double) stats.getLeased() / stats.getMax() : 0.0);
+        metrics.put("leases", leases);
+        metrics.put("leaseTimeouts", connectionManager.leaseTimeouts.get());
+        metrics.put("averageLeaseWaitMs",
+                leases > 0 ? connectionManager.totalLeaseWaitNanos.get() / leases / 1_000_000.0 : 0.0);
+        metrics.put("maxLeaseWaitMs", connectionManager.maxLeaseWaitNanos.get() / 1_000_000.0);
+        return metrics;
+    }
+
+    /**
+     * Pula połączeń mierząca czas oczekiwania na wydanie połączenia
+     */
+    private static final class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+        private final AtomicLong leases = new AtomicLong();
+        private final AtomicLong leaseTimeouts = new AtomicLong();
+        private final AtomicLong totalLeaseWaitNanos = new AtomicLong();
+        private final AtomicLong maxLeaseWaitNanos = new AtomicLong();
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            ConnectionRequest request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        HttpClientConnection connection = request.get(timeout, timeUnit);
+                        recordLease(System.nanoTime() - start);
+                        return connection;
+                    } catch (ConnectionPoolTimeoutException e) {
+                        leaseTimeouts.incrementAndGet();
+                        throw e;
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+
+        private void recordLease(long waitNanos) {
+            leases.incrementAndGet();
+            totalLeaseWaitNanos.addAndGet(waitNanos);
+            maxLeaseWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
     }
 
     /**
@@ -78,6 +254,26 @@ public class NextcloudClient {
         }
     }
 
+    // Pobierz metadane pojedynczego zasobu (PROPFIND z Depth: 0) lub null, jeśli zasób nie istnieje
+    public DavResource stat(String remotePath) throws IOException {
+        String encodedPath = encodePath(remotePath);
+        try {
+            List<DavResource> resources = sardine.list(baseUrl + encodedPath, 0);
+            return resources.isEmpty() ? null : resources.get(0);
+        } catch (SardineException e) {
+            if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    // Pobierz ETag zasobu - ETag folderu zmienia się przy każdej zmianie w jego poddrzewie
+    public String getEtag(String remotePath) throws IOException {
+        DavResource resource = stat(remotePath);
+        return resource != null ? resource.getEtag() : null;
+    }
+
     // Pobierz plik
     public InputStream downloadFile(String remotePath) throws Exception {
         String encodedPath = encodePath(remotePath);
@@ -91,19 +287,218 @@ public class NextcloudClient {
         }
     }
 
+    /**
+     * Otwórz plik do strumieniowego odczytu. Wywołujący musi zamknąć zwrócony {@link RemoteFile}.
+     *
+     * @throws FileNotFoundException jeśli plik nie istnieje w Nextcloud
+     */
+    public RemoteFile openFile(String remotePath) throws IOException {
+        return openFile(remotePath, Map.of());
+    }
+
+    // Otwórz strumień pliku z nagłówkami żądania (Range, If-None-Match, If-Modified-Since, If-Range, If-Match).
+    // Odpowiedzi 206, 304, 412 i 416 są zwracane wywołującemu - bez treści w przypadku 304, 412 i 416.
+    public RemoteFile openFile(String remotePath, Map<String, String> requestHeaders) throws IOException {
+        String encodedPath = encodePath(remotePath);
+        logger.debug("Opening file stream: {} (encoded: {}, headers: {})", remotePath, encodedPath,
+                requestHeaders.keySet());
+
+        HttpGet request = new HttpGet(baseUrl + encodedPath);
+        request.setHeader(HttpHeaders.AUTHORIZATION, authorizationHeader);
+        requestHeaders.forEach(request::setHeader);
+
+        CloseableHttpResponse response = streamingClient.execute(request);
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+
+        if (!requestHeaders.isEmpty() && (status == HttpStatus.SC_NOT_MODIFIED
+                || status == HttpStatus.SC_PRECONDITION_FAILED
+                || status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE)) {
+            EntityUtils.consumeQuietly(entity);
+            return new RemoteFile(request, response, InputStream.nullInputStream(), 0, null);
+        }
+
+        boolean success = status == HttpStatus.SC_OK
+                || (status == HttpStatus.SC_PARTIAL_CONTENT && requestHeaders.containsKey(HttpHeaders.RANGE));
+        if (!success || entity == null) {
+            EntityUtils.consumeQuietly(entity);
+            response.close();
+            if (status == HttpStatus.SC_NOT_FOUND) {
+                throw new FileNotFoundException("Plik nie znaleziony w Nextcloud: " + remotePath);
+            }
+            logger.error("Błąd podczas pobierania pliku {}: status {}", remotePath, status);
+            throw new IOException("Nieoczekiwany status " + status + " podczas pobierania pliku " + remotePath);
+        }
+
+        Header contentType = entity.getContentType();
+        return new RemoteFile(request, response, entity.getContent(), entity.getContentLength(),
+                contentType != null ? contentType.getValue() : null);
+    }
+
     // Wyślij plik
     public void uploadFile(String remotePath, byte[] data) throws Exception {
+        uploadFile(remotePath, new ByteArrayInputStream(data), data.length, null);
+    }
+
+    // Wyślij plik strumieniowo - treść jest przepisywana ze strumienia do żądania PUT bez buforowania w pamięci
+    public void uploadFile(String remotePath, InputStream data, long contentLength, String contentType) throws IOException {
         String encodedPath = encodePath(remotePath);
-        logger.debug("Uploading file to: {} (encoded: {})", remotePath, encodedPath);
+        logger.debug("Uploading file to: {} (encoded: {}, {} B)", remotePath, encodedPath, contentLength);
 
+        HttpPut request = new HttpPut(baseUrl + encodedPath);
+        InputStreamEntity entity = new InputStreamEntity(data, contentLength);
+        if (contentType != null && !contentType.isEmpty()) {
+            entity.setContentType(contentType);
+        }
+        request.setEntity(entity);
         try {
-            sardine.put(baseUrl + encodedPath, data);
+            execute(request);
         } catch (IOException e) {
             logger.error("Błąd podczas wysyłania pliku do {}: {}", remotePath, e.getMessage());
             throw e;
         }
     }
 
+    // Wyślij duży plik protokołem chunked upload v2 Nextcloud: MKCOL katalogu tymczasowego, równoległe PUT
+    // kolejnych fragmentów (najwyżej parallelism naraz, każdy w pamięci) i MOVE złożonego pliku na miejsce docelowe
+    public void uploadFileChunked(String remotePath, InputStream data, long totalLength, int chunkSize,
+                                  int parallelism) throws IOException {
+        String uploadId = "imagehub-" + UUID.randomUUID();
+        logger.debug("Chunked upload of {} ({} B, chunks of {} B) as {}", remotePath, totalLength, chunkSize, uploadId);
+
+        startChunkedUpload(uploadId, remotePath);
+        try {
+            uploadChunks(uploadId, remotePath, data, chunkSize, parallelism);
+            completeChunkedUpload(uploadId, remotePath, totalLength);
+        } catch (IOException e) {
+            logger.error("Błąd podczas wysyłania pliku do {} fragmentami: {}", remotePath, e.getMessage());
+            abortChunkedUpload(uploadId);
+            throw e;
+        }
+    }
+
+    // Utwórz katalog tymczasowy uploadu fragmentami (chunked upload v2)
+    public void startChunkedUpload(String uploadId, String remotePath) throws IOException {
+        DavRequest mkcol = new DavRequest("MKCOL", uploadsUrl + uploadId);
+        mkcol.setHeader("Destination", baseUrl + encodePath(remotePath));
+        execute(mkcol);
+    }
+
+    // Wyślij fragment o numerze 1..10000 - Nextcloud składa plik według numerów, kolejność wysyłania jest dowolna
+    public void uploadChunk(String uploadId, String remotePath, int number, InputStream data,
+                            long length) throws IOException {
+        DavRequest put = new DavRequest("PUT", uploadsUrl + uploadId + "/" + number);
+        put.setHeader("Destination", baseUrl + encodePath(remotePath));
+        put.setEntity(new InputStreamEntity(data, length));
+        execute(put);
+    }
+
+    // Złóż wysłane fragmenty w plik docelowy
+    public void completeChunkedUpload(String uploadId, String remotePath, long totalLength) throws IOException {
+        DavRequest move = new DavRequest("MOVE", uploadsUrl + uploadId + "/.file");
+        move.setHeader("Destination", baseUrl + encodePath(remotePath));
+        move.setHeader("Overwrite", "T");
+        move.setHeader("OC-Total-Length", Long.toString(totalLength));
+        execute(move);
+    }
+
+    // Usuń niedokończony upload, aby fragmenty nie zajmowały miejsca do czasu sprzątania przez Nextcloud
+    public void abortChunkedUpload(String uploadId) {
+        try {
+            execute(new DavRequest("DELETE", uploadsUrl + uploadId));
+        } catch (IOException e) {
+            logger.warn("Nie można usunąć niedokończonego uploadu {}: {}", uploadId, e.getMessage());
+        }
+    }
+
+    private void uploadChunks(String uploadId, String remotePath, InputStream data, int chunkSize,
+                              int parallelism) throws IOException {
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        List<Future<?>> uploads = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Fragmenty są numerowane od 1; wszystkie poza ostatnim mają ten sam rozmiar.
+            // Pozwolenie jest pobierane przed odczytem fragmentu, więc w pamięci jest najwyżej parallelism buforów
+            for (int number = 1; ; number++) {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    executor.shutdownNow();
+                    throw new InterruptedIOException("Przerwano wysyłanie fragmentów");
+                }
+                if (failure.get() != null) {
+                    permits.release();
+                    executor.shutdownNow();
+                    throw failure.get();
+                }
+
+                byte[] chunk;
+                try {
+                    chunk = data.readNBytes(chunkSize);
+                } catch (IOException e) {
+                    permits.release();
+                    executor.shutdownNow();
+                    throw e;
+                }
+                if (chunk.length == 0 && number > 1) {
+                    permits.release();
+                    break;
+                }
+
+                int chunkNumber = number;
+                uploads.add(executor.submit(() -> {
+                    try {
+                        uploadChunk(uploadId, remotePath, chunkNumber, new ByteArrayInputStream(chunk), chunk.length);
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+
+                if (chunk.length < chunkSize) {
+                    break;
+                }
+            }
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        logger.debug("Uploaded {} chunks for {}", uploads.size(), uploadId);
+    }
+
+    // Wykonaj żądanie z uwierzytelnieniem; status spoza 2xx kończy się wyjątkiem
+    private void execute(HttpRequestBase request) throws IOException {
+        request.setHeader(HttpHeaders.AUTHORIZATION, authorizationHeader);
+        try (CloseableHttpResponse response = streamingClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            EntityUtils.consumeQuietly(response.getEntity());
+            if (status < 200 || status >= 300) {
+                throw new IOException("Nieoczekiwany status " + status + " dla " + request.getMethod() + " " + request.getURI());
+            }
+        }
+    }
+
+    /**
+     * Żądanie WebDAV (MKCOL, MOVE, PUT, DELETE) wysyłane klientem strumieniowym
+     */
+    private static final class DavRequest extends HttpEntityEnclosingRequestBase {
+        private final String method;
+
+        private DavRequest(String method, String url) {
+            this.method = method;
+            setURI(URI.create(url));
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+    }
+
     /**
      * Utwórz katalog w Nextcloud
      * Obsługuje retry i sprawdzanie istnienia
@@ -0,0 +1,46 @@
+package com.imagehub.imagehub.service;
+
+import java.util.Date;
+
+/**
+ * Niemodyfikowalny wpis zasobu Nextcloud przechowywany w cache'u folderów.
+ *
+ * Zamiast mapy z opakowanymi wartościami i pełną ścieżką wpis przechowuje pola prymitywne
+ * oraz referencję do ścieżki rodzica, współdzieloną przez wszystkie wpisy folderu.
+ * Pełna ścieżka jest wyliczana na żądanie, a odpowiedź API widzi wpis
+ * przez {@link NextcloudResourceView}.
+ *
+ * @param parentPath    ścieżka folderu nadrzędnego (ta sama instancja dla całego folderu)
+ * @param name          nazwa zasobu
+ * @param directory     czy zasób jest katalogiem
+ * @param contentType   typ zawartości (internowany) lub null
+ * @param lastModified  czas modyfikacji w milisekundach lub -1, jeśli nieznany
+ * @param contentLength rozmiar w bajtach lub -1, jeśli nieznany
+ */
+public record NextcloudResource(String parentPath, String name, boolean directory, String contentType,
+                                long lastModified, long contentLength) {
+
+    /**
+     * Utwórz wpis, internując typ zawartości (w drzewie występuje zaledwie kilka różnych wartości)
+     */
+    public static NextcloudResource of(String parentPath, String name, boolean directory, String contentType,
+                                       long contentLength, Date lastModified) {
+        return new NextcloudResource(parentPath, name, directory,
+                contentType != null ? contentType.intern() : null,
+                lastModified != null ? lastModified.getTime() : -1L,
+                contentLength);
+    }
+
+    /**
+     * Pełna ścieżka zasobu
+     */
+    public String path() {
+        if (parentPath.isEmpty()) {
+            return name;
+        } else if (parentPath.endsWith("/")) {
+            return parentPath + name;
+        } else {
+            return parentPath + "/" + name;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.imagehub.imagehub.service;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Widok wpisu z cache'a folderów w formacie mapy odpowiedzi API.
+ *
+ * Pola zasobu (name, isDirectory, contentType, path, lastModified, contentLength) są odczytywane
+ * bezpośrednio ze współdzielonego, niemodyfikowalnego {@link NextcloudResource}, a pola zależne
+ * od użytkownika (canWrite, canDelete, isProductFolder, children...) trafiają do małej nakładki
+ * należącej do widoku. Wpis w cache'u nigdy nie jest modyfikowany ani kopiowany.
+ */
+final class NextcloudResourceView extends AbstractMap<String, Object> {
+
+    private static final List<String> RESOURCE_KEYS =
+            List.of("name", "isDirectory", "contentType", "path", "lastModified", "contentLength");
+
+    private final NextcloudResource resource;
+    private final Map<String, Object> overlay = new HashMap<>(8);
+    private String path;
+
+    NextcloudResourceView(NextcloudResource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = overlay.get(key);
+        if (value != null || overlay.containsKey(key)) {
+            return value;
+        }
+        return key instanceof String name ? resourceValue(name) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overlay.containsKey(key) || (key instanceof String name && resourceValue(name) != null);
+    }
+
+    /**
+     * Zapisz pole w nakładce widoku (może przesłonić pole zasobu)
+     */
+    @Override
+    public Object put(String key, Object value) {
+        Object previous = get(key);
+        overlay.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return snapshotEntries().iterator();
+            }
+
+            @Override
+            public int size() {
+                int size = overlay.size();
+                for (String key : RESOURCE_KEYS) {
+                    if (!overlay.containsKey(key) && resourceValue(key) != null) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Lista wpisów do serializacji - pola zasobu nieprzesłonięte przez nakładkę, a następnie nakładka
+     */
+    private List<Entry<String, Object>> snapshotEntries() {
+        List<Entry<String, Object>> entries = new ArrayList<>(RESOURCE_KEYS.size() + overlay.size());
+        for (String key : RESOURCE_KEYS) {
+            if (!overlay.containsKey(key)) {
+                Object value = resourceValue(key);
+                if (value != null) {
+                    entries.add(new SimpleImmutableEntry<>(key, value));
+                }
+            }
+        }
+        for (Entry<String, Object> entry : overlay.entrySet()) {
+            entries.add(new SimpleImmutableEntry<>(entry));
+        }
+        return entries;
+    }
+
+    /**
+     * Wartość pola zasobu; null oznacza brak pola (tak jak w dotychczasowym formacie mapy)
+     */
+    private Object resourceValue(String key) {
+        return switch (key) {
+            case "name" -> resource.name();
+            case "isDirectory" -> resource.directory();
+            case "contentType" -> resource.contentType();
+            case "path" -> path();
+            case "lastModified" -> resource.lastModified() >= 0 ? new Date(resource.lastModified()) : null;
+            case "contentLength" -> resource.contentLength() > 0 ? resource.contentLength() : null;
+            default -> null;
+        };
+    }
+
+    private String path() {
+        if (path == null) {
+            path = resource.path();
+        }
+        return path;
+    }
+}
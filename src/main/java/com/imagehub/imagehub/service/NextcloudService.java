@@ -2,18 +2,38 @@ package com.imagehub.imagehub.service;
 
 import com.github.sardine.DavResource;
 import com.imagehub.imagehub.model.FolderPermission;
+import com.imagehub.imagehub.config.NextcloudProperties;
 import com.imagehub.imagehub.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 @Service
@@ -24,16 +44,83 @@ public class NextcloudService {
     private final FolderPermissionService folderPermissionService;
     private final NextcloudSyncService nextcloudSyncService;
 
+    // Bufor między archiwum ZIP a strumieniem odpowiedzi HTTP
+    private static final int ZIP_BUFFER_SIZE = 64 * 1024;
+    // Pobieranie plików z wyprzedzeniem podczas tworzenia archiwów ZIP
+    private final int exportPrefetchDepth;
+    private final long exportMemoryBudgetBytes;
+    private final Path exportSpillDirectory;
+    // Dyskowy cache gotowych archiwów folderów (null - wyłączony)
+    private final ZipExportCache zipExportCache;
+
+    // Listowania folderów spoza cache'a w toku - równoczesne żądania tej samej ścieżki
+    // współdzielą jedno zapytanie PROPFIND i jego wynik
+    private final Map<String, CompletableFuture<List<DavResource>>> inFlightListings = new ConcurrentHashMap<>();
+    private final AtomicLong uncachedListings = new AtomicLong();
+    private final AtomicLong coalescedListings = new AtomicLong();
+    // Lokalny cache treści plików (null - wyłączony) i trwające pobrania do cache'a
+    private final FileBlobCache fileBlobCache;
+    private final Map<String, CompletableFuture<FileBlobCache.Blob>> inFlightBlobFetches = new ConcurrentHashMap<>();
+    // Wysyłanie fragmentami (chunked upload v2) dla dużych plików
+    private final long uploadChunkThresholdBytes;
+    private final int uploadChunkSizeBytes;
+    private final int uploadChunkParallelism;
+    // Liczba plików uploadu zbiorczego wysyłanych do Nextcloud równocześnie
+    private final int uploadBatchParallelism;
+
     @Autowired
     public NextcloudService(NextcloudClient nextcloudClient,
                             FolderPermissionService folderPermissionService,
-                            NextcloudSyncService nextcloudSyncService) {
+                            NextcloudSyncService nextcloudSyncService,
+                            NextcloudProperties properties) {
         this.nextcloudClient = nextcloudClient;
         this.folderPermissionService = folderPermissionService;
         this.nextcloudSyncService = nextcloudSyncService;
+
+        NextcloudProperties.Export export = properties.getExport();
+        this.exportPrefetchDepth = export.getPrefetchDepth();
+        this.exportMemoryBudgetBytes = export.getMemoryBudgetMb() * 1024L * 1024L;
+        String spillDir = export.getSpillDir();
+        this.exportSpillDirectory = spillDir != null && !spillDir.isBlank() ? Path.of(spillDir) : null;
+        this.zipExportCache = createZipExportCache(export);
+        this.fileBlobCache = createFileBlobCache(properties.getFileCache());
+
+        NextcloudProperties.Upload upload = properties.getUpload();
+        this.uploadChunkThresholdBytes = upload.getChunkThresholdMb() * 1024L * 1024L;
+        // Nextcloud odrzuca fragmenty mniejsze niż 5 MB (poza ostatnim)
+        this.uploadChunkSizeBytes = Math.max(5, upload.getChunkSizeMb()) * 1024 * 1024;
+        this.uploadChunkParallelism = Math.max(1, upload.getChunkParallelism());
+        this.uploadBatchParallelism = Math.max(1, upload.getBatchParallelism());
         logger.info("🔹 Nextcloud service initialized");
     }
 
+    private ZipExportCache createZipExportCache(NextcloudProperties.Export export) {
+        String cacheDir = export.getCacheDir();
+        if (cacheDir == null || cacheDir.isBlank()) {
+            return null;
+        }
+        try {
+            return new ZipExportCache(Path.of(cacheDir), export.getCacheMaxSizeMb() * 1024L * 1024L);
+        } catch (IOException e) {
+            logger.warn("Cannot initialize ZIP export cache in {}: {}", cacheDir, e.getMessage());
+            return null;
+        }
+    }
+
+    private FileBlobCache createFileBlobCache(NextcloudProperties.FileCache fileCache) {
+        String cacheDir = fileCache.getDir();
+        if (cacheDir == null || cacheDir.isBlank()) {
+            return null;
+        }
+        try {
+            return new FileBlobCache(Path.of(cacheDir), fileCache.getMaxSizeMb() * 1024L * 1024L,
+                    fileCache.getMaxFileMb() * 1024L * 1024L, fileCache.getRevalidateAfterSeconds() * 1000L);
+        } catch (IOException e) {
+            logger.warn("Cannot initialize file cache in {}: {}", cacheDir, e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Lista plików z uwzględnieniem uprawnień użytkownika
      */
@@ -46,41 +133,55 @@ public class NextcloudService {
      * z możliwością zagłębiania się w podfoldery
      */
     public List<Map<String, Object>> listFilesWithChildren(String path, boolean includeChildren, int depth, User currentUser) throws Exception {
+        return listFilesWithChildren(path, includeChildren, depth, folderPermissionService.createEvaluator(currentUser));
+    }
+
+    /**
+     * Lista plików - uprawnienia wszystkich elementów drzewa są sprawdzane w pamięci
+     * na podstawie uprawnień wczytanych raz dla całego żądania
+     */
+    private List<Map<String, Object>> listFilesWithChildren(String path, boolean includeChildren, int depth,
+                                                            FolderAccessEvaluator access) throws Exception {
+        User currentUser = access.getUser();
         logger.info("Listing files at path: {} (includeChildren: {}, depth: {})", path, includeChildren, depth);
 
         List<Map<String, Object>> result = new ArrayList<>();
 
         // Sprawdź, czy obecny folder jest oznaczony jako mający dzieci jako produkty
-        boolean currentFolderHasChildrenAsProducts = folderPermissionService.hasChildrenAsProducts(path);
+        boolean currentFolderHasChildrenAsProducts = access.hasChildrenAsProducts(path);
 
-        // Próbuj pobrać dane z cache'a
-        if (nextcloudSyncService.isPathCached(path)) {
+        // Próbuj pobrać dane z cache'a (jeden odczyt snapshotu)
+        Optional<List<NextcloudResource>> cachedContents = nextcloudSyncService.findCachedFolderContents(path);
+        if (cachedContents.isPresent()) {
             logger.info("Using cached data for path: {}", path);
-            List<Map<String, Object>> cachedResources = nextcloudSyncService.getCachedFolderContents(path);
+            List<NextcloudResource> cachedResources = cachedContents.get();
 
-            for (Map<String, Object> resource : cachedResources) {
-                String resourcePath = (String) resource.get("path");
-                String resourceName = (String) resource.get("name");
+            for (NextcloudResource cachedResource : cachedResources) {
+                String resourcePath = cachedResource.path();
+                String resourceName = cachedResource.name();
 
                 // Przetwarzaj tylko jeśli to nie jest bieżący folder i użytkownik ma uprawnienia
                 boolean isNotCurrentFolder = !resourcePath.equals(path);
-                boolean userHasReadPermission = folderPermissionService.canUserReadFolder(currentUser, resourcePath);
+                boolean userHasReadPermission = access.canRead(resourcePath);
 
                 // Sprawdź dodatkowo, czy nazwa zasobu nie jest taka sama jak ostatni segment ścieżki
                 String lastPathSegment = extractLastPathSegment(path);
                 boolean isNotSameNameAsCurrentFolder = !resourceName.equals(lastPathSegment);
 
                 if (isNotCurrentFolder && userHasReadPermission) {
+                    // Wpis z cache'a jest współdzielony - pola użytkownika trafiają do nakładki widoku
+                    Map<String, Object> resource = new NextcloudResourceView(cachedResource);
+
                     // Dodaj informacje o uprawnieniach
-                    resource.put("canWrite", folderPermissionService.canUserWriteFolder(currentUser, resourcePath));
-                    resource.put("canDelete", folderPermissionService.canUserDeleteFolder(currentUser, resourcePath));
+                    resource.put("canWrite", access.canWrite(resourcePath));
+                    resource.put("canDelete", access.canDelete(resourcePath));
 
-                    boolean isDirectory = (Boolean) resource.get("isDirectory");
+                    boolean isDirectory = cachedResource.directory();
 
                     // Sprawdź, czy to folder ma oznaczenie "dzieci jako produkty"
                     boolean resourceHasChildrenAsProducts = false;
                     if (isDirectory) {
-                        resourceHasChildrenAsProducts = folderPermissionService.hasChildrenAsProducts(resourcePath);
+                        resourceHasChildrenAsProducts = access.hasChildrenAsProducts(resourcePath);
                         resource.put("hasChildrenAsProducts", resourceHasChildrenAsProducts);
                     }
 
@@ -92,7 +193,7 @@ public class NextcloudService {
                         } else {
                             // Sprawdź, czy jest dzieckiem innego folderu z "dziećmi-produktami"
                             // ale tylko jeśli sam nie ma oznaczenia "dzieci-produkty"
-                            if (!resourceHasChildrenAsProducts && folderPermissionService.isChildOfFolderWithProductChildren(resourcePath)) {
+                            if (!resourceHasChildrenAsProducts && access.isChildOfFolderWithProductChildren(resourcePath)) {
                                 resource.put("isProductFolder", true);
                             } else {
                                 resource.put("isProductFolder", false);
@@ -105,7 +206,7 @@ public class NextcloudService {
                     // Obsługa dzieci rekurencyjnie
                     if (includeChildren && isDirectory && depth > 0) {
                         try {
-                            List<Map<String, Object>> children = listFilesWithChildren(resourcePath, includeChildren, depth - 1, currentUser);
+                            List<Map<String, Object>> children = listFilesWithChildren(resourcePath, includeChildren, depth - 1, access);
                             if (!children.isEmpty()) {
                                 resource.put("children", children);
                             }
@@ -128,7 +229,7 @@ public class NextcloudService {
         }
 
         // Jeśli dane nie są dostępne w cache'u, pobierz je bezpośrednio z Nextcloud
-        List<DavResource> resources = nextcloudClient.listFiles(path);
+        List<DavResource> resources = listUncachedFolder(path);
         logger.info("Received {} resources from Nextcloud for path {}", resources.size(), path);
 
         for (int i = 0; i < resources.size(); i++) {
@@ -154,7 +255,7 @@ public class NextcloudService {
                 String resourcePath = buildFullPath(path, resource.getName());
 
                 // Dodaj zasób tylko jeśli użytkownik ma uprawnienia
-                if (folderPermissionService.canUserReadFolder(currentUser, resourcePath)) {
+                if (access.canRead(resourcePath)) {
                     Map<String, Object> fileInfo = new HashMap<>();
                     fileInfo.put("name", resource.getName());
                     fileInfo.put("path", resourcePath);
@@ -164,15 +265,15 @@ public class NextcloudService {
                     fileInfo.put("lastModified", resource.getModified());
 
                     // Dodaj informacje o uprawnieniach
-                    fileInfo.put("canWrite", folderPermissionService.canUserWriteFolder(currentUser, resourcePath));
-                    fileInfo.put("canDelete", folderPermissionService.canUserDeleteFolder(currentUser, resourcePath));
+                    fileInfo.put("canWrite", access.canWrite(resourcePath));
+                    fileInfo.put("canDelete", access.canDelete(resourcePath));
 
                     boolean isDirectory = resource.isDirectory();
 
                     // Sprawdź, czy ten folder ma oznaczenie "dzieci jako produkty"
                     boolean resourceHasChildrenAsProducts = false;
                     if (isDirectory) {
-                        resourceHasChildrenAsProducts = folderPermissionService.hasChildrenAsProducts(resourcePath);
+                        resourceHasChildrenAsProducts = access.hasChildrenAsProducts(resourcePath);
                         fileInfo.put("hasChildrenAsProducts", resourceHasChildrenAsProducts);
                     }
 
@@ -184,7 +285,7 @@ public class NextcloudService {
                         } else {
                             // Sprawdź, czy jest dzieckiem innego folderu z "dziećmi-produktami"
                             // ale tylko jeśli sam nie ma oznaczenia "dzieci-produkty"
-                            if (!resourceHasChildrenAsProducts && folderPermissionService.isChildOfFolderWithProductChildren(resourcePath)) {
+                            if (!resourceHasChildrenAsProducts && access.isChildOfFolderWithProductChildren(resourcePath)) {
                                 fileInfo.put("isProductFolder", true);
                             } else {
                                 fileInfo.put("isProductFolder", false);
@@ -198,7 +299,7 @@ public class NextcloudService {
                     if (includeChildren && isDirectory && depth > 0 && !resource.getName().isEmpty()) {
                         try {
                             logger.info("Recursively listing files in subfolder: {}", resourcePath);
-                            List<Map<String, Object>> children = listFilesWithChildren(resourcePath, includeChildren, depth - 1, currentUser);
+                            List<Map<String, Object>> children = listFilesWithChildren(resourcePath, includeChildren, depth - 1, access);
                             if (!children.isEmpty()) {
                                 fileInfo.put("children", children);
                             }
@@ -219,6 +320,56 @@ public class NextcloudService {
         return result;
     }
 
+    /**
+     * Wylistuj folder bezpośrednio z Nextcloud, łącząc równoczesne żądania tej samej ścieżki.
+     * Pierwsze żądanie wykonuje PROPFIND, a pozostałe czekają na jego wynik (lub błąd).
+     */
+    private List<DavResource> listUncachedFolder(String path) throws Exception {
+        CompletableFuture<List<DavResource>> listing = new CompletableFuture<>();
+        CompletableFuture<List<DavResource>> inFlight = inFlightListings.putIfAbsent(path, listing);
+
+        if (inFlight != null) {
+            coalescedListings.incrementAndGet();
+            logger.debug("Joining in-flight listing of {}", path);
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        uncachedListings.incrementAndGet();
+        try {
+            // Wynik jest współdzielony między żądaniami - udostępnij go tylko do odczytu
+            List<DavResource> resources = Collections.unmodifiableList(nextcloudClient.listFiles(path));
+            listing.complete(resources);
+            return resources;
+        } catch (Exception e) {
+            listing.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightListings.remove(path, listing);
+        }
+    }
+
+    /**
+     * Metryki dostępu do Nextcloud: listowania spoza cache'a i pula połączeń HTTP
+     */
+    public Map<String, Object> getNextcloudMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("uncachedListings", uncachedListings.get());
+        metrics.put("coalescedListings", coalescedListings.get());
+        metrics.put("inFlightListings", inFlightListings.size());
+        metrics.put("connectionPool", nextcloudClient.getConnectionPoolMetrics());
+        if (zipExportCache != null) {
+            metrics.put("zipExportCache", zipExportCache.getMetrics());
+        }
+        if (fileBlobCache != null) {
+            metrics.put("fileCache", fileBlobCache.getMetrics());
+        }
+        return metrics;
+    }
+
     /**
      * Pomocnicza metoda do wyodrębnienia ostatniego segmentu ścieżki
      */
@@ -258,6 +409,7 @@ public class NextcloudService {
         Map<String, Map<String, Object>> folderMap = new HashMap<>(); // Mapa do śledzenia już dodanych folderów
 
         List<FolderPermission> permissions = folderPermissionService.getUserPermissions(currentUser);
+        FolderAccessEvaluator access = folderPermissionService.createEvaluator(currentUser);
 
         // Dla każdego uprawnienia próbujemy pobrać informacje o folderze
         for (FolderPermission permission : permissions) {
@@ -271,7 +423,7 @@ public class NextcloudService {
                     }
 
                     // Pobierz informacje o folderze z Nextcloud, ale bez filtrowania właśnie tego folderu
-                    List<Map<String, Object>> folderContents = listFilesWithChildren(folderPath, false, 0, currentUser);
+                    List<Map<String, Object>> folderContents = listFilesWithChildren(folderPath, false, 0, access);
 
                     // Utwórz wpis dla folderu głównego, biorąc pierwszy element jeśli istnieje
                     Map<String, Object> mainFolder = null;
@@ -288,12 +440,12 @@ public class NextcloudService {
                         mainFolder.put("name", extractLastPathSegment(folderPath));
                         mainFolder.put("path", folderPath);
                         mainFolder.put("isDirectory", true);
-                        mainFolder.put("canWrite", folderPermissionService.canUserWriteFolder(currentUser, folderPath));
-                        mainFolder.put("canDelete", folderPermissionService.canUserDeleteFolder(currentUser, folderPath));
+                        mainFolder.put("canWrite", access.canWrite(folderPath));
+                        mainFolder.put("canDelete", access.canDelete(folderPath));
                     }
 
                     // Pobierz podfoldery w osobnym wywołaniu (z odpowiednią głębokością)
-                    List<Map<String, Object>> subfolders = listFilesWithChildren(folderPath, true, 2, currentUser);
+                    List<Map<String, Object>> subfolders = listFilesWithChildren(folderPath, true, 2, access);
 
                     // Filtruj podfoldery, aby uniknąć duplikacji głównego folderu
                     List<Map<String, Object>> filteredSubfolders = new ArrayList<>();
@@ -327,10 +479,128 @@ public class NextcloudService {
         result.add(myFoldersRoot);
         return result;
     }
+    /**
+     * Otwórz plik do strumieniowego pobrania z uwzględnieniem uprawnień użytkownika.
+     * Wywołujący musi zamknąć zwrócony {@link RemoteFile}.
+     */
+    public RemoteFile openFile(String path, User currentUser) throws Exception {
+        return openFile(path, currentUser, Map.of());
+    }
+
+    /**
+     * Otwórz strumień pliku z przekazaniem do Nextcloud nagłówków warunkowych i zakresu
+     * (częściowe pobranie nie ściąga całego pliku z Nextcloud)
+     */
+    public RemoteFile openFile(String path, User currentUser, Map<String, String> requestHeaders) throws Exception {
+        // Sprawdź uprawnienia do pobierania
+        if (!folderPermissionService.canUserDownloadFolder(currentUser, path)) {
+            logger.warn("User {} attempted to download file {} without permission", currentUser.getUsername(), path);
+            throw new SecurityException("No download permission for this file");
+        }
+
+        logger.info("Streaming file: {}", path);
+        return nextcloudClient.openFile(path, requestHeaders);
+    }
+
+    /**
+     * Otwórz plik przez lokalny cache treści. Świeży wpis jest zwracany od razu, starszy jest
+     * potwierdzany w Nextcloud żądaniem z If-None-Match, a brakujący lub nieaktualny - pobierany
+     * do cache'a (jednoczesne żądania tego samego pliku współdzielą jedno pobranie).
+     *
+     * @return plik z cache'a lub null, gdy cache jest wyłączony albo plik jest za duży do cache'owania
+     */
+    public CachedFile openCachedFile(String path, User currentUser) throws Exception {
+        if (fileBlobCache == null) {
+            return null;
+        }
+
+        // Sprawdź uprawnienia do pobierania
+        if (!folderPermissionService.canUserDownloadFolder(currentUser, path)) {
+            logger.warn("User {} attempted to download file {} without permission", currentUser.getUsername(), path);
+            throw new SecurityException("No download permission for this file");
+        }
+
+        FileBlobCache.Blob blob = fileBlobCache.find(path);
+        if (blob != null && fileBlobCache.isFresh(blob)) {
+            return fileBlobCache.recordHit(blob, false).toCachedFile();
+        }
+
+        // Rozmiar znany ze snapshotu - za duże pliki od razu pomijają cache
+        Optional<NextcloudResource> resource = nextcloudSyncService.findCachedResource(path);
+        if (resource.isPresent() && resource.get().contentLength() > fileBlobCache.getMaxEntryBytes()) {
+            return null;
+        }
+
+        CompletableFuture<FileBlobCache.Blob> fetch = new CompletableFuture<>();
+        CompletableFuture<FileBlobCache.Blob> inFlight = inFlightBlobFetches.putIfAbsent(path, fetch);
+        if (inFlight != null) {
+            try {
+                FileBlobCache.Blob fetched = inFlight.join();
+                return fetched != null ? fetched.toCachedFile() : null;
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        try {
+            FileBlobCache.Blob fetched = fetchIntoBlobCache(path, blob);
+            fetch.complete(fetched);
+            return fetched != null ? fetched.toCachedFile() : null;
+        } catch (Exception e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightBlobFetches.remove(path, fetch);
+        }
+    }
+
+    /**
+     * Potwierdź wpis warunkowym żądaniem lub pobierz nową wersję pliku do cache'a
+     */
+    private FileBlobCache.Blob fetchIntoBlobCache(String path, FileBlobCache.Blob blob) throws IOException {
+        Map<String, String> headers = blob != null ? Map.of("If-None-Match", blob.etag()) : Map.of();
+        try (RemoteFile remoteFile = nextcloudClient.openFile(path, headers)) {
+            if (remoteFile.getStatus() == 304) {
+                return fileBlobCache.recordHit(blob, true);
+            }
+
+            String etag = remoteFile.getHeader("ETag");
+            if (etag == null || remoteFile.getContentLength() > fileBlobCache.getMaxEntryBytes()) {
+                // Bez ETagu nie da się potwierdzić wpisu, a za dużego pliku nie cache'ujemy
+                remoteFile.abort();
+                return null;
+            }
+
+            FileBlobCache.Blob stored = fileBlobCache.store(path, etag, remoteFile.getContentType(),
+                    parseHttpDate(remoteFile.getHeader("Last-Modified")), remoteFile.getInputStream());
+            if (stored == null) {
+                remoteFile.abort();
+            }
+            return stored;
+        }
+    }
+
+    private static long parseHttpDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
     /**
      * Pobierz plik z uwzględnieniem uprawnień użytkownika
      */
     public byte[] downloadFile(String path, User currentUser) throws Exception {
+        // Plik z lokalnego cache'a treści, jeśli jest włączony (sprawdza też uprawnienia)
+        CachedFile cachedFile = openCachedFile(path, currentUser);
+        if (cachedFile != null) {
+            return Files.readAllBytes(cachedFile.getFile());
+        }
+
         // Sprawdź uprawnienia do pobierania
         if (!folderPermissionService.canUserDownloadFolder(currentUser, path)) {
             logger.warn("User {} attempted to download file {} without permission", currentUser.getUsername(), path);
@@ -338,14 +608,16 @@ public class NextcloudService {
         }
 
         logger.info("Downloading file: {}", path);
-        InputStream is = nextcloudClient.downloadFile(path);
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
-        int nRead;
-        byte[] data = new byte[16384];
+        // Zamknięcie strumienia zwraca połączenie do puli również w przypadku błędu
+        try (InputStream is = nextcloudClient.downloadFile(path)) {
+            int nRead;
+            byte[] data = new byte[16384];
 
-        while ((nRead = is.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
+            while ((nRead = is.read(data, 0, data.length)) != -1) {
+                buffer.write(data, 0, nRead);
+            }
         }
 
         buffer.flush();
@@ -353,26 +625,74 @@ public class NextcloudService {
     }
 
     /**
-     * Tworzy plik zip z folderu
+     * Przygotuj eksport folderu do ZIP. Jeśli archiwum z tym samym ETagiem folderu i tym samym
+     * zestawem widocznych dla użytkownika wpisów jest w cache'u, zwracany jest gotowy plik;
+     * w przeciwnym razie archiwum jest generowane przy zapisie i jednocześnie zapisywane do cache'a.
      */
-    public byte[] createZipFromFolder(String folderPath, User currentUser) throws Exception {
+    public FolderZipExport prepareFolderZip(String folderPath, User currentUser) throws Exception {
         // Sprawdź uprawnienia
-        if (!folderPermissionService.canUserReadFolder(currentUser, folderPath)) {
+        FolderAccessEvaluator access = folderPermissionService.createEvaluator(currentUser);
+        if (!access.canRead(folderPath)) {
             throw new SecurityException("Brak uprawnień do odczytu tego folderu");
         }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-            // Rekurencyjnie dodaj pliki do zipa
-            addFolderToZip(zos, folderPath, extractLastPathSegment(folderPath), currentUser);
+        // ETag jest pobierany przed listowaniem - zmiana w trakcie eksportu da co najwyżej
+        // nowszą treść pod starszym kluczem, który nie zostanie już trafiony
+        String folderEtag = zipExportCache != null ? nextcloudClient.getEtag(folderPath) : null;
+
+        List<ZipItem> items = new ArrayList<>();
+        collectZipItems(folderPath, extractLastPathSegment(folderPath), access, items);
+
+        if (folderEtag == null) {
+            return FolderZipExport.streamed(out -> writeZip(items, out, ZipExportProgress.NONE));
         }
 
-        return baos.toByteArray();
+        String cacheKey = ZipExportCache.key(folderPath, folderEtag,
+                items.stream().map(ZipItem::signature).toList());
+        ZipExportCache.CachedArchive archive = zipExportCache.find(cacheKey);
+        if (archive != null) {
+            logger.info("Serving cached ZIP for folder {} ({} bytes)", folderPath, archive.size());
+            return FolderZipExport.cached(archive.file(), archive.size());
+        }
+
+        return FolderZipExport.streamed(out -> {
+            try (ZipExportCache.Entry entry = zipExportCache.create(cacheKey)) {
+                writeZip(items, entry.teeWith(out), ZipExportProgress.NONE);
+                entry.commit();
+            }
+        });
     }
 
-    private void addFolderToZip(ZipOutputStream zos, String folderPath,
-                                String zipPath, User currentUser) throws Exception {
-        List<Map<String, Object>> contents = listFilesWithChildren(folderPath, false, 0, currentUser);
+    /**
+     * Zapisz wpisy jako archiwum ZIP bezpośrednio do strumienia wyjściowego.
+     * Kolejne pliki są pobierane z Nextcloud równolegle z wyprzedzeniem, a wpisy zapisywane
+     * w stałej kolejności; archiwa powyżej 4 GB (lub z ponad 65535 wpisami) są zapisywane w formacie Zip64.
+     * Uprawnienia do pobrania plików są sprawdzane wcześniej, przy zbieraniu wpisów.
+     */
+    private void writeZip(List<ZipItem> items, OutputStream out, ZipExportProgress progress) throws Exception {
+        progress.planned(items.size());
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(out, ZIP_BUFFER_SIZE));
+        try (ZipExportWriter writer = new ZipExportWriter(zos, nextcloudClient::openFile,
+                exportPrefetchDepth, exportMemoryBudgetBytes, exportSpillDirectory, progress)) {
+            for (ZipItem item : items) {
+                if (item.directory()) {
+                    writer.addDirectory(item.entryPath());
+                } else {
+                    // Plik jest pobierany z wyprzedzeniem i zapisywany w kolejności dodania
+                    writer.addFile(item.path(), item.entryPath());
+                }
+            }
+            // Dopisz katalog centralny bez zamykania strumienia odpowiedzi
+            writer.finish();
+        }
+    }
+
+    /**
+     * Zbierz rekurencyjnie wpisy archiwum widoczne dla użytkownika
+     */
+    private void collectZipItems(String folderPath, String zipPath, FolderAccessEvaluator access,
+                                 List<ZipItem> items) throws Exception {
+        List<Map<String, Object>> contents = listFilesWithChildren(folderPath, false, 0, access);
 
         for (Map<String, Object> item : contents) {
             String itemPath = (String) item.get("path");
@@ -383,41 +703,59 @@ public class NextcloudService {
 
             if (isDirectory) {
                 // Utwórz wpis dla katalogu
-                ZipEntry entry = new ZipEntry(entryPath + "/");
-                zos.putNextEntry(entry);
-                zos.closeEntry();
+                items.add(new ZipItem(itemPath, entryPath, true));
 
                 // Rekurencyjnie dodaj zawartość katalogu
-                addFolderToZip(zos, itemPath, entryPath, currentUser);
+                collectZipItems(itemPath, entryPath, access, items);
             } else {
-                // Dodaj plik do zipa
-                ZipEntry entry = new ZipEntry(entryPath);
-                zos.putNextEntry(entry);
-
-                // Pobierz zawartość pliku i zapisz do zipa
-                byte[] fileContent = downloadFile(itemPath, currentUser);
-                zos.write(fileContent);
-                zos.closeEntry();
+                checkDownloadPermission(itemPath, access);
+                items.add(new ZipItem(itemPath, entryPath, false));
             }
         }
     }
 
     /**
-     * Tworzy plik ZIP zawierający wiele plików i folderów
+     * Brak uprawnień do pobrania pliku przerywa eksport jeszcze przed wysłaniem odpowiedzi
+     * (a archiwum z cache'a nie może go ominąć)
+     */
+    private void checkDownloadPermission(String path, FolderAccessEvaluator access) {
+        if (!access.canDownload(path)) {
+            logger.warn("User {} attempted to download file {} without permission", access.getUser().getUsername(), path);
+            throw new SecurityException("No download permission for this file");
+        }
+    }
+
+    /**
+     * Wpis archiwum ZIP - katalog lub plik wraz ze ścieżką w archiwum
+     */
+    private record ZipItem(String path, String entryPath, boolean directory) {
+        String signature() {
+            return directory ? entryPath + "/" : entryPath;
+        }
+    }
+
+    /**
+     * Zapisz archiwum ZIP zawierające wiele plików i folderów bezpośrednio do strumienia wyjściowego
      *
      * @param paths Lista ścieżek do plików i folderów, które mają być dodane do ZIP
      * @param currentUser Aktualny użytkownik
-     * @return Dane pliku ZIP jako tablica bajtów
+     * @param out Strumień, do którego zapisywane jest archiwum (np. odpowiedź HTTP)
      * @throws Exception W przypadku błędu
      */
-    public byte[] createZipFromMultiplePaths(List<String> paths, User currentUser) throws Exception {
-        logger.info("Tworzenie pliku ZIP z {} elementów dla użytkownika: {}", paths.size(), currentUser.getUsername());
+    public void writeZipFromMultiplePaths(List<String> paths, User currentUser, OutputStream out) throws Exception {
+        writeZipFromMultiplePaths(paths, currentUser, out, ZipExportProgress.NONE);
+    }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zipOut = new ZipOutputStream(baos)) {
+    /**
+     * Zapisz archiwum ZIP z wielu ścieżek, raportując postęp (np. dla zadań eksportu w tle)
+     */
+    void writeZipFromMultiplePaths(List<String> paths, User currentUser, OutputStream out,
+                                   ZipExportProgress progress) throws Exception {
+        logger.info("Tworzenie pliku ZIP z {} elementów dla użytkownika: {}", paths.size(), currentUser.getUsername());
 
-            // Ustaw poziom kompresji
-            zipOut.setLevel(ZipOutputStream.DEFLATED);
+        try {
+            FolderAccessEvaluator access = folderPermissionService.createEvaluator(currentUser);
+            List<ZipItem> items = new ArrayList<>();
 
             // Dodaj każdy plik/folder do archiwum ZIP
             for (String path : paths) {
@@ -430,62 +768,213 @@ public class NextcloudService {
                 logger.debug("Dodawanie elementu: {} (ścieżka: {}) do ZIP", itemName, path);
 
                 // Sprawdź, czy to plik czy folder
-                boolean isDirectory = false;
-                try {
-                    // Próbujemy listować pliki - jeśli się uda, to znaczy, że to folder
-                    listFiles(path, currentUser);
-                    isDirectory = true;
-                } catch (Exception e) {
-                    // Jeśli się nie uda listować, to prawdopodobnie to plik
-                    isDirectory = false;
-                }
-
-                if (isDirectory) {
+                if (isDirectory(path)) {
                     // Dodaj folder i jego zawartość rekurencyjnie
-                    addFolderToZip(zipOut, path, itemName, currentUser);
+                    collectZipItems(path, itemName, access, items);
                 } else {
                     // Dodaj pojedynczy plik do zipa
-                    ZipEntry entry = new ZipEntry(itemName);
-                    zipOut.putNextEntry(entry);
-
-                    // Pobierz zawartość pliku i zapisz do zipa
-                    byte[] fileContent = downloadFile(path, currentUser);
-                    zipOut.write(fileContent);
-                    zipOut.closeEntry();
-
-                    logger.debug("Dodano plik do ZIP: {}", itemName);
+                    checkDownloadPermission(path, access);
+                    items.add(new ZipItem(path, itemName, false));
                 }
             }
 
-            // Zamknij strumień ZIP i zwróć dane
-            zipOut.flush();
-            zipOut.close();
-
-            logger.info("Pomyślnie utworzono ZIP z {} elementów, rozmiar: {} bajtów",
-                    paths.size(), baos.size());
+            writeZip(items, out, progress);
 
-            return baos.toByteArray();
+            logger.info("Pomyślnie utworzono ZIP z {} elementów", paths.size());
         } catch (Exception e) {
             logger.error("Błąd podczas tworzenia ZIP z wielu elementów: {}", e.getMessage(), e);
             throw e;
         }
     }
 
+    /**
+     * Sprawdź, czy ścieżka jest folderem: najpierw w cache'u (wpis w folderze nadrzędnym lub sam folder),
+     * a dopiero gdy go tam nie ma - jednym zapytaniem PROPFIND z Depth: 0
+     *
+     * @throws FileNotFoundException gdy zasób nie istnieje
+     */
+    private boolean isDirectory(String path) throws IOException {
+        String normalizedPath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+
+        Optional<NextcloudResource> cached = nextcloudSyncService.findCachedResource(normalizedPath);
+        if (cached.isPresent()) {
+            return cached.get().directory();
+        }
+        if (nextcloudSyncService.isPathCached(normalizedPath)) {
+            return true;
+        }
+
+        DavResource resource = nextcloudClient.stat(normalizedPath);
+        if (resource == null) {
+            throw new FileNotFoundException("Zasób nie istnieje: " + path);
+        }
+        return resource.isDirectory();
+    }
+
     /**
      * Wgraj plik z uwzględnieniem uprawnień użytkownika
      */
     public void uploadFile(String path, byte[] data, User currentUser) throws Exception {
+        uploadFile(path, data, null, currentUser);
+    }
+
+    /**
+     * Wgraj plik z uwzględnieniem uprawnień użytkownika, z typem zawartości z żądania
+     */
+    public void uploadFile(String path, byte[] data, String contentType, User currentUser) throws Exception {
+        uploadFile(path, new ByteArrayInputStream(data), data.length, contentType, currentUser);
+    }
+
+    /**
+     * Wgraj plik strumieniowo - treść nie jest buforowana w pamięci, a pliki powyżej progu
+     * są wysyłane fragmentami (chunked upload v2)
+     *
+     * @param size rozmiar treści w bajtach
+     */
+    public void uploadFile(String path, InputStream data, long size, String contentType,
+                           User currentUser) throws Exception {
         // Sprawdź uprawnienia do zapisu
         if (!folderPermissionService.canUserWriteFolder(currentUser, extractParentPath(path))) {
             logger.warn("User {} attempted to upload file to {} without permission", currentUser.getUsername(), path);
             throw new SecurityException("No write permission for this folder");
         }
 
-        logger.info("Uploading file to: {}", path);
-        nextcloudClient.uploadFile(path, data);
+        logger.info("Uploading file to: {} ({} B)", path, size);
+        putFile(path, data, size, contentType);
 
-        // Po dodaniu pliku, wymuś synchronizację
-        nextcloudSyncService.forceSynchronization();
+        applyLocalUpload(path, size, contentType);
+    }
+
+    /**
+     * Wgraj wiele plików do jednego folderu.
+     *
+     * Uprawnienia są sprawdzane raz dla całego folderu, pliki są przesyłane strumieniowo przez ograniczoną
+     * liczbę równoczesnych żądań PUT, a cache jest aktualizowany jedną łatką i jednym odświeżeniem na końcu.
+     * Błąd pojedynczego pliku nie przerywa pozostałych - wynik zawiera status każdego pliku w kolejności żądania.
+     *
+     * @throws SecurityException gdy użytkownik nie ma prawa zapisu w folderze
+     */
+    public List<BatchUploadResult> uploadFiles(String folderPath, List<BatchUploadItem> items,
+                                               User currentUser) throws InterruptedException {
+        if (!folderPermissionService.canUserWriteFolder(currentUser, folderPath)) {
+            logger.warn("User {} attempted to upload {} files to {} without permission",
+                    currentUser.getUsername(), items.size(), folderPath);
+            throw new SecurityException("No write permission for this folder");
+        }
+
+        logger.info("Uploading {} files to: {}", items.size(), folderPath);
+        Semaphore permits = new Semaphore(uploadBatchParallelism);
+        List<Future<BatchUploadResult>> uploads = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (BatchUploadItem item : items) {
+                permits.acquire();
+                uploads.add(executor.submit(() -> {
+                    try {
+                        return uploadBatchItem(folderPath, item);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        List<BatchUploadResult> results = new ArrayList<>(uploads.size());
+        List<NextcloudResource> uploaded = new ArrayList<>();
+        for (Future<BatchUploadResult> upload : uploads) {
+            BatchUploadResult result = upload.resultNow();
+            results.add(result);
+            if (result.error() == null) {
+                uploaded.add(NextcloudResource.of(folderPath, result.name(), false, result.contentType(),
+                        result.size(), new Date()));
+                if (fileBlobCache != null) {
+                    fileBlobCache.invalidate(result.path());
+                }
+            }
+        }
+        nextcloudSyncService.applyLocalUploads(folderPath, uploaded);
+
+        logger.info("Uploaded {}/{} files to: {}", uploaded.size(), items.size(), folderPath);
+        return results;
+    }
+
+    /**
+     * Prześlij jeden plik uploadu zbiorczego - błędy są zwracane w wyniku, a nie rzucane
+     */
+    private BatchUploadResult uploadBatchItem(String folderPath, BatchUploadItem item) {
+        String name = item.name();
+        if (!isValidFileName(name)) {
+            return new BatchUploadResult(name, null, item.size(), null, "Niepoprawna nazwa pliku");
+        }
+
+        String path = folderPath.isEmpty() ? name : folderPath + "/" + name;
+        String contentType = item.contentType() != null && !item.contentType().isEmpty()
+                ? item.contentType() : URLConnection.guessContentTypeFromName(name);
+        try (InputStream data = item.content().getInputStream()) {
+            putFile(path, data, item.size(), contentType);
+            return new BatchUploadResult(name, path, item.size(), contentType, null);
+        } catch (Exception e) {
+            logger.warn("Error uploading file {} in batch: {}", path, e.getMessage());
+            return new BatchUploadResult(name, path, item.size(), contentType, "Nie udało się przesłać pliku");
+        }
+    }
+
+    /**
+     * Czy nazwa pliku przesyłanego do folderu jest poprawna - nie może wskazywać poza folder,
+     * dla którego sprawdzono uprawnienia (wspólne dla wszystkich uploadów)
+     */
+    public static boolean isValidFileName(String name) {
+        return name != null && !name.isBlank() && !name.contains("/") && !name.contains("\\")
+                && !name.equals(".") && !name.equals("..");
+    }
+
+    /**
+     * Prześlij treść do Nextcloud - jednym żądaniem PUT lub fragmentami powyżej progu
+     */
+    private void putFile(String path, InputStream data, long size, String contentType) throws IOException {
+        if (size > uploadChunkThresholdBytes) {
+            nextcloudClient.uploadFileChunked(path, data, size, uploadChunkSizeBytes, uploadChunkParallelism);
+        } else {
+            nextcloudClient.uploadFile(path, data, size, contentType);
+        }
+    }
+
+    /**
+     * Plik uploadu zbiorczego - treść jest otwierana dopiero w chwili wysyłania
+     */
+    public record BatchUploadItem(String name, long size, String contentType, InputStreamSource content) {
+    }
+
+    /**
+     * Wynik wysłania pliku uploadu zbiorczego
+     *
+     * @param error opis błędu lub null, jeśli plik został przesłany
+     */
+    public record BatchUploadResult(String name, String path, long size, String contentType, String error) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", name);
+            map.put("path", path);
+            map.put("size", size);
+            map.put("status", error == null ? "uploaded" : "failed");
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Po dodaniu pliku od razu uwzględnij go w cache'u - odświeżenie folderu nadrzędnego w tle potwierdzi zmianę
+     */
+    void applyLocalUpload(String path, long size, String contentType) {
+        if (contentType == null || contentType.isEmpty()) {
+            contentType = URLConnection.guessContentTypeFromName(extractLastPathSegment(path));
+        }
+        nextcloudSyncService.applyLocalUpload(path, size, contentType);
+        if (fileBlobCache != null) {
+            fileBlobCache.invalidate(path);
+        }
     }
 
     /**
@@ -527,6 +1016,8 @@ public class NextcloudService {
                     try {
                         nextcloudClient.createDirectory(segmentPath);
                         logger.info("Created directory segment: {}", segmentPath);
+                        // Uwzględnij nowy katalog w cache'u od razu
+                        nextcloudSyncService.applyLocalDirectory(segmentPath);
                     } catch (Exception e) {
                         if (e.getMessage().contains("405") && nextcloudClient.exists(segmentPath)) {
                             // Katalog prawdopodobnie już istnieje - ignoruj błąd
@@ -542,8 +1033,6 @@ public class NextcloudService {
             }
         }
 
-        // Po utworzeniu katalogu, wymuś synchronizację
-        nextcloudSyncService.forceSynchronization();
     }
 
     /**
@@ -561,8 +1050,11 @@ public class NextcloudService {
         logger.info("Deleting resource: {}", path);
         nextcloudClient.delete(path);
 
-        // Po usunięciu zasobu, wymuś synchronizację
-        nextcloudSyncService.forceSynchronization();
+        // Po usunięciu zasobu od razu usuń go z cache'u - odświeżenie folderu nadrzędnego w tle potwierdzi zmianę
+        nextcloudSyncService.applyLocalDelete(path);
+        if (fileBlobCache != null) {
+            fileBlobCache.invalidate(path);
+        }
     }
 
     /**
@@ -622,7 +1114,7 @@ public class NextcloudService {
             String startPath = (currentUser.getRole() != null && "ADMIN".equals(currentUser.getRole().getName())) ? "" : "";
 
             // Pobierz wszystkie pliki i foldery, rekurencyjnie przeszukując całą strukturę
-            searchInPath(startPath, query, currentUser, searchResults, new HashSet<>());
+            searchInPath(startPath, query, folderPermissionService.createEvaluator(currentUser), searchResults, new HashSet<>());
 
             logger.info("Search completed, found {} results", searchResults.size());
             return searchResults;
@@ -637,12 +1129,12 @@ public class NextcloudService {
      *
      * @param path Ścieżka do przeszukania
      * @param query Zapytanie wyszukiwania
-     * @param currentUser Aktualny użytkownik
+     * @param access Uprawnienia aktualnego użytkownika
      * @param results Lista wyników do uzupełnienia
      * @param visitedPaths Zbiór już odwiedzonych ścieżek (zapobiega zapętleniu)
      * @throws Exception W przypadku błędu komunikacji z Nextcloud
      */
-    private void searchInPath(String path, String query, User currentUser,
+    private void searchInPath(String path, String query, FolderAccessEvaluator access,
                               List<Map<String, Object>> results, Set<String> visitedPaths) throws Exception {
         // Zapobiegaj zapętleniu przez śledzenie odwiedzonych ścieżek
         if (visitedPaths.contains(path)) {
@@ -651,33 +1143,36 @@ public class NextcloudService {
         visitedPaths.add(path);
 
         // Pobierz zawartość bieżącego folderu
-        List<Map<String, Object>> folderContent;
+        List<NextcloudResource> folderContent;
 
         // Najpierw spróbuj pobrać dane z cache'a
-        if (nextcloudSyncService.isPathCached(path)) {
-            folderContent = nextcloudSyncService.getCachedFolderContents(path);
+        Optional<List<NextcloudResource>> cachedContents = nextcloudSyncService.findCachedFolderContents(path);
+        if (cachedContents.isPresent()) {
+            folderContent = cachedContents.get();
         } else {
             // Jeśli nie są w cache'u, pobierz bezpośrednio z Nextcloud
-            List<DavResource> resources = nextcloudClient.listFiles(path);
-            folderContent = convertResourcesToFileInfoList(resources, path, currentUser);
+            List<DavResource> resources = listUncachedFolder(path);
+            folderContent = convertResourcesToNextcloudResources(resources, path);
         }
 
         // Przeszukaj zawartość bieżącego folderu
-        for (Map<String, Object> item : folderContent) {
-            String itemPath = (String) item.get("path");
-            String itemName = (String) item.get("name");
-            boolean isDirectory = (boolean) item.get("isDirectory");
+        for (NextcloudResource resource : folderContent) {
+            String itemPath = resource.path();
+            String itemName = resource.name();
+            boolean isDirectory = resource.directory();
 
             // Sprawdź uprawnienia użytkownika do odczytu tego elementu
-            if (!folderPermissionService.canUserReadFolder(currentUser, itemPath)) {
+            if (!access.canRead(itemPath)) {
                 continue;
             }
 
             // Sprawdź czy nazwa pasuje do zapytania (nie uwzględniając wielkości liter)
             if (itemName.toLowerCase().contains(query.toLowerCase())) {
+                Map<String, Object> item = new NextcloudResourceView(resource);
+
                 // Dodaj informacje o uprawnieniach
-                item.put("canWrite", folderPermissionService.canUserWriteFolder(currentUser, itemPath));
-                item.put("canDelete", folderPermissionService.canUserDeleteFolder(currentUser, itemPath));
+                item.put("canWrite", access.canWrite(itemPath));
+                item.put("canDelete", access.canDelete(itemPath));
 
                 // Dodaj do wyników
                 results.add(item);
@@ -685,22 +1180,21 @@ public class NextcloudService {
 
             // Jeśli to folder, rekurencyjnie przeszukaj jego zawartość
             if (isDirectory) {
-                searchInPath(itemPath, query, currentUser, results, visitedPaths);
+                searchInPath(itemPath, query, access, results, visitedPaths);
             }
         }
     }
 
     /**
-     * Konwertuje listę DavResource na listę map z informacjami o plikach
+     * Konwertuje listę DavResource na wpisy w formacie cache'a folderów
      *
      * @param resources Lista zasobów z Nextcloud
      * @param parentPath Ścieżka rodzica
-     * @param currentUser Aktualny użytkownik
-     * @return Lista map z informacjami o plikach
+     * @return Lista wpisów zasobów
      */
-    private List<Map<String, Object>> convertResourcesToFileInfoList(
-            List<DavResource> resources, String parentPath, User currentUser) {
-        List<Map<String, Object>> result = new ArrayList<>();
+    private List<NextcloudResource> convertResourcesToNextcloudResources(
+            List<DavResource> resources, String parentPath) {
+        List<NextcloudResource> result = new ArrayList<>();
 
         for (DavResource resource : resources) {
             // Pomijamy pierwszy element (bieżący folder) i puste nazwy
@@ -708,24 +1202,8 @@ public class NextcloudService {
                 continue;
             }
 
-            // Budujemy pełną ścieżkę
-            String resourcePath = buildFullPath(parentPath, resource.getName());
-
-            // Sprawdzamy uprawnienia
-            if (!folderPermissionService.canUserReadFolder(currentUser, resourcePath)) {
-                continue;
-            }
-
-            Map<String, Object> fileInfo = new HashMap<>();
-            fileInfo.put("name", resource.getName());
-            fileInfo.put("path", resourcePath);
-            fileInfo.put("isDirectory", resource.isDirectory());
-            fileInfo.put("contentType", resource.getContentType());
-            fileInfo.put("contentLength", resource.getContentLength());
-            fileInfo.put("lastModified", resource.getModified());
-
-            // Dodajemy do wyniku
-            result.add(fileInfo);
+            result.add(NextcloudResource.of(parentPath, resource.getName(), resource.isDirectory(),
+                    resource.getContentType(), resource.getContentLength(), resource.getModified()));
         }
 
         return result;
@@ -1,6 +1,9 @@
 package com.imagehub.imagehub.service;
 
 import com.github.sardine.DavResource;
+import com.imagehub.imagehub.config.NextcloudProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,10 +11,30 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,22 +44,161 @@ public class NextcloudSyncService {
 
     private final NextcloudClient nextcloudClient;
 
-    // Cache dla przechowywania struktury folderów
-    private final Map<String, List<Map<String, Object>>> folderCache = new ConcurrentHashMap<>();
+    // Ogranicznik jednoczesnych zapytań PROPFIND, aby nie przeciążać Nextcloud
+    private final int maxConcurrency;
+    private final Semaphore crawlPermits;
+
+    // Polityka głębokości synchronizacji: domyślna głębokość i nadpisania dla prefiksów ścieżek
+    private final int defaultMaxDepth;
+    private final List<Map.Entry<String, Integer>> depthOverrides;
+    private final int maxFolders;
+
+    // Trwały zapis snapshotu na dysku (null, jeśli wyłączony)
+    private final FolderSnapshotStore snapshotStore;
+    private volatile boolean snapshotLoadedFromDisk = false;
+    // Zapis odbywa się w tle poza publishLock - publikacje w oknie zapisu dają jeden zapis pliku
+    private static final long SNAPSHOT_WRITE_DELAY_MS = 5000;
+    private final ScheduledThreadPoolExecutor snapshotWriter;
+    private final AtomicBoolean snapshotWriteScheduled = new AtomicBoolean();
+    private volatile long snapshotPublishedAt = 0;
+
+    // Cache dla przechowywania struktury folderów - niemodyfikowalny snapshot podmieniany atomowo
+    // po zakończeniu synchronizacji, dzięki czemu czytelnicy zawsze widzą kompletne drzewo
+    private volatile FolderSnapshot folderCache = FolderSnapshot.EMPTY;
+    // Publikacje snapshotu (pełna synchronizacja i odświeżenia folderów) są serializowane
+    private final Object publishLock = new Object();
     private volatile long lastSyncTime = 0;
+    private volatile int lastSyncListedFolders = 0;
+    private volatile int lastSyncReusedFolders = 0;
+    private volatile long lastCrawlDurationMs = 0;
+    private volatile int lastCrawlPeakConcurrency = 0;
     private volatile boolean synchronizationInProgress = false;
     private volatile int consecutiveErrors = 0;
     private static final int MAX_CONSECUTIVE_ERRORS = 3;
 
+    // Zmiany wykonane przez ImageHub: optymistyczne łatki listingów folderów nakładane na snapshot
+    // do czasu odświeżenia, które potwierdza lub koryguje łatkę; żądania odświeżenia łączone są w oknie debounce
+    private static final int MAX_REFRESH_DELAY_WINDOWS = 10;
+    private final long refreshDebounceMs;
+    private final ScheduledExecutorService refreshScheduler;
+    private final AtomicLong mutationSequence = new AtomicLong();
+    private final Map<String, FolderPatch> patchedFolders = new ConcurrentHashMap<>();
+    private final Map<String, Long> recentMutations = new ConcurrentHashMap<>();
+    // Ścieżki usunięte przez ImageHub (wraz z poddrzewem) - do czasu odświeżenia folderu nadrzędnego
+    // są traktowane jako nieobecne w cache'u, więc żądania trafiają do Nextcloud
+    private final Map<String, Long> deletedPaths = new ConcurrentHashMap<>();
+    private final Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private volatile long firstRefreshRequestAt = 0;
+    private volatile long lastRefreshRequestAt = 0;
+    private final AtomicLong refreshRequests = new AtomicLong();
+    private final AtomicLong refreshedFolders = new AtomicLong();
+
+    // Typ zawartości zwracany przez Nextcloud dla katalogów
+    private static final String DIRECTORY_CONTENT_TYPE = "httpd/unix-directory";
+
     // Lista folderów, które powinny być ukryte
     private static final List<String> HIDDEN_FOLDERS = List.of("admin");
 
     @Autowired
-    public NextcloudSyncService(NextcloudClient nextcloudClient) {
+    public NextcloudSyncService(NextcloudClient nextcloudClient, NextcloudProperties properties) {
         this.nextcloudClient = nextcloudClient;
+        this.maxConcurrency = Math.max(1, properties.getSync().getMaxConcurrency());
+        this.crawlPermits = new Semaphore(maxConcurrency);
+        this.defaultMaxDepth = properties.getSync().getMaxDepth();
+        this.depthOverrides = normalizeDepthOverrides(properties.getSync().getDepthOverrides());
+        this.maxFolders = properties.getSync().getMaxFolders();
+        String snapshotDir = properties.getSync().getSnapshotDir();
+        this.snapshotStore = snapshotDir == null || snapshotDir.isBlank()
+                ? null
+                : new FolderSnapshotStore(Path.of(snapshotDir));
+        this.refreshDebounceMs = Math.max(0, properties.getSync().getRefreshDebounceMs());
+        this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nextcloud-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshotWriter = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "nextcloud-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Przy zamykaniu zaległy zapis jest wykonywany od razu, a nie po upływie opóźnienia
+        snapshotWriter.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
         logger.info("🔹 Usługa synchronizacji Nextcloud zainicjalizowana");
     }
 
+    @PreDestroy
+    public void shutdown() {
+        refreshScheduler.shutdownNow();
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (snapshotWriteScheduled.get()) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Wczytaj zapisany snapshot przy starcie, aby listowania były obsługiwane z cache'a
+     * od razu - synchronizacja przyrostowa uzgodni go z Nextcloud w tle
+     */
+    @PostConstruct
+    public void loadPersistedSnapshot() {
+        if (snapshotStore == null) {
+            return;
+        }
+
+        FolderSnapshotStore.Loaded loaded = snapshotStore.load();
+        if (loaded == null) {
+            logger.info("Brak poprawnego snapshotu w {}, pierwsza synchronizacja będzie pełna", snapshotStore.getFile());
+            return;
+        }
+
+        folderCache = loaded.snapshot();
+        lastSyncTime = loaded.savedAt();
+        snapshotLoadedFromDisk = true;
+        logger.info("Wczytano snapshot {} folderów z {}", loaded.snapshot().size(), snapshotStore.getFile());
+    }
+
+    /**
+     * Zleć zapis opublikowanego snapshotu na dysku - kolejne publikacje przed zapisem
+     * są łączone, a zapisywany jest najnowszy snapshot
+     */
+    private void schedulePersist() {
+        if (snapshotStore == null) {
+            return;
+        }
+
+        snapshotPublishedAt = System.currentTimeMillis();
+        if (snapshotWriteScheduled.compareAndSet(false, true)) {
+            try {
+                snapshotWriter.schedule(this::writeSnapshot, SNAPSHOT_WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Zamykanie aplikacji - zapis wykona shutdown()
+            }
+        }
+    }
+
+    /**
+     * Zapisz bieżący snapshot na dysku (błąd zapisu nie przerywa synchronizacji)
+     */
+    private void writeSnapshot() {
+        // Flaga jest zdejmowana przed odczytem snapshotu - publikacja w trakcie zapisu zleci kolejny
+        snapshotWriteScheduled.set(false);
+        long savedAt = snapshotPublishedAt;
+        FolderSnapshot snapshot = folderCache;
+
+        try {
+            snapshotStore.save(snapshot, savedAt);
+        } catch (Exception e) {
+            logger.warn("Nie można zapisać snapshotu do {}: {}", snapshotStore.getFile(), e.getMessage());
+        }
+    }
+
     /**
      * Zaplanowane zadanie synchronizacji z Nextcloud co 15 sekund
      */
@@ -87,23 +249,71 @@ public class NextcloudSyncService {
         try {
             logger.info("Rozpoczęcie synchronizacji folderów Nextcloud");
 
-            // Wyczyść bieżący cache
-            folderCache.clear();
-
-            // Pobierz strukturę root z Nextcloud
-            try {
-                synchronizeFolder("");
-            } catch (Exception e) {
-                logger.error("Błąd podczas synchronizacji folderu głównego: {}", e.getMessage());
+            // Nowy snapshot budowany jest obok bieżącego - czytelnicy korzystają ze starego do momentu podmiany
+            FolderSnapshot previous = folderCache;
+            long crawlStart = System.nanoTime();
+            long crawlStartSequence = mutationSequence.get();
+
+            // Rodzeństwo folderów jest listowane równolegle na wątkach wirtualnych
+            SyncRun run;
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                run = new SyncRun(previous, "", executor);
+
+                // Pobierz strukturę root z Nextcloud
+                try {
+                    synchronizeFolder("", run);
+                } catch (Exception e) {
+                    logger.error("Błąd podczas synchronizacji folderu głównego: {}", e.getMessage());
+                    // Nie publikuj niekompletnego drzewa - zostaw poprzedni snapshot
+                    return;
+                }
             }
 
-            // Dodatkowa weryfikacja - upewnij się, że folder "admin" nie jest w cache'u
-            folderCache.getOrDefault("", List.of()).removeIf(resource ->
-                    HIDDEN_FOLDERS.contains((String) resource.get("name")));
+            lastCrawlDurationMs = (System.nanoTime() - crawlStart) / 1_000_000;
+            lastCrawlPeakConcurrency = run.peakInFlight.get();
+            lastSyncListedFolders = run.listedFolders.get();
+            lastSyncReusedFolders = run.reusedFolders.get();
+
+            synchronized (publishLock) {
+                if (run.unchanged) {
+                    // ETag katalogu głównego jest ten sam - w całym drzewie nic się nie zmieniło
+                    logger.debug("Struktura Nextcloud bez zmian (ETag katalogu głównego), pozostawienie snapshotu");
+                } else {
+                    // Foldery zmienione przez ImageHub w trakcie przeszukiwania mogły zostać wylistowane
+                    // przed zmianą - zachowaj dla nich wersję z bieżącego snapshotu
+                    FolderSnapshot current = folderCache;
+                    recentMutations.forEach((mutatedPath, sequence) -> {
+                        if (sequence > crawlStartSequence) {
+                            List<NextcloudResource> currentResources = current.get(mutatedPath);
+                            if (currentResources != null) {
+                                run.folders.put(mutatedPath, currentResources);
+                            } else {
+                                run.folders.remove(mutatedPath);
+                            }
+                            run.etags.remove(mutatedPath);
+                        }
+                    });
+
+                    // Dodatkowa weryfikacja - upewnij się, że folder "admin" nie jest w cache'u
+                    run.folders.computeIfPresent("", (path, resources) -> resources.stream()
+                            .filter(resource -> !HIDDEN_FOLDERS.contains(resource.name()))
+                            .collect(Collectors.toList()));
+
+                    // Atomowa podmiana snapshotu jedną operacją przypisania
+                    folderCache = FolderSnapshot.freeze(run.folders, run.etags);
+                    schedulePersist();
+
+                    // Zmiany sprzed rozpoczęcia przeszukiwania są już odzwierciedlone w nowym snapshocie
+                    patchedFolders.values().removeIf(patch -> patch.sequence() <= crawlStartSequence);
+                    deletedPaths.values().removeIf(sequence -> sequence <= crawlStartSequence);
+                }
+                recentMutations.values().removeIf(sequence -> sequence <= crawlStartSequence);
+            }
 
             // Aktualizacja czasu ostatniej synchronizacji
             lastSyncTime = System.currentTimeMillis();
-            logger.info("Synchronizacja Nextcloud zakończona o {}", lastSyncTime);
+            logger.info("Synchronizacja Nextcloud zakończona o {} w {} ms (wylistowano {} folderów, ponownie użyto {}, maks. równoległość {})",
+                    lastSyncTime, lastCrawlDurationMs, lastSyncListedFolders, lastSyncReusedFolders, lastCrawlPeakConcurrency);
         } catch (Exception e) {
             logger.error("Błąd podczas synchronizacji z Nextcloud: {}", e.getMessage(), e);
         } finally {
@@ -112,87 +322,545 @@ public class NextcloudSyncService {
     }
 
     /**
-     * Rekurencyjnie synchronizuj folder i jego podfoldery
+     * Zastosuj w cache'u plik wgrany przez ImageHub - listing folderu nadrzędnego
+     * od razu zawiera nowy plik, a odświeżenie w tle potwierdza zmianę
+     */
+    public void applyLocalUpload(String filePath, long contentLength, String contentType) {
+        String parentPath = extractParentPath(filePath);
+        String name = extractName(filePath);
+        applyLocalUploads(parentPath, List.of(NextcloudResource.of(parentPath, name, false, contentType,
+                contentLength, new Date())));
+    }
+
+    /**
+     * Zastosuj w cache'u pliki wgrane jednym żądaniem do jednego folderu - jedna łatka
+     * i jedno odświeżenie niezależnie od liczby plików
+     */
+    public void applyLocalUploads(String folderPath, List<NextcloudResource> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Set<String> names = entries.stream().map(NextcloudResource::name).collect(Collectors.toSet());
+        entries.forEach(entry -> restoreDeletedPath(entry.path()));
+
+        patchFolder(folderPath, resources -> {
+            resources.removeIf(resource -> names.contains(resource.name()));
+            resources.addAll(entries);
+        });
+        requestRefresh(folderPath);
+    }
+
+    /**
+     * Zastosuj w cache'u katalog utworzony przez ImageHub (nowy katalog jest pusty)
+     */
+    public void applyLocalDirectory(String directoryPath) {
+        String parentPath = extractParentPath(directoryPath);
+        String name = extractName(directoryPath);
+        NextcloudResource entry = NextcloudResource.of(parentPath, name, true, DIRECTORY_CONTENT_TYPE,
+                0, new Date());
+        restoreDeletedPath(directoryPath);
+
+        patchFolder(parentPath, resources -> {
+            resources.removeIf(resource -> name.equals(resource.name()));
+            resources.add(entry);
+        });
+        setPatch(directoryPath, List.of());
+        requestRefresh(parentPath);
+    }
+
+    /**
+     * Zastosuj w cache'u usunięcie zasobu przez ImageHub
+     */
+    public void applyLocalDelete(String path) {
+        String parentPath = extractParentPath(path);
+        String name = extractName(path);
+
+        patchFolder(parentPath, resources -> resources.removeIf(resource -> name.equals(resource.name())));
+        // Usunięty zasób (i poddrzewo folderu) jest nieobecny do czasu, aż odświeżenie rodzica usunie go ze snapshotu
+        deletedPaths.put(path, mutationSequence.incrementAndGet());
+        requestRefresh(parentPath);
+    }
+
+    /**
+     * Zasób utworzony ponownie w miejscu usuniętego przestaje być nieobecny; podfoldery usuniętego
+     * folderu pozostają ukryte do czasu odświeżenia
+     */
+    private void restoreDeletedPath(String path) {
+        if (deletedPaths.isEmpty() || deletedPaths.remove(path) == null) {
+            return;
+        }
+
+        List<NextcloudResource> previous = folderCache.get(path);
+        if (previous != null) {
+            long sequence = mutationSequence.incrementAndGet();
+            for (NextcloudResource resource : previous) {
+                if (resource.directory()) {
+                    deletedPaths.put(resource.path(), sequence);
+                }
+            }
+        }
+    }
+
+    /**
+     * Czy ścieżka lub jeden z jej przodków został usunięty przez ImageHub
+     */
+    private boolean isDeleted(String path) {
+        if (deletedPaths.isEmpty()) {
+            return false;
+        }
+
+        String current = path;
+        while (!current.isEmpty()) {
+            if (deletedPaths.containsKey(current)) {
+                return true;
+            }
+            current = extractParentPath(current);
+        }
+        return false;
+    }
+
+    /**
+     * Unieważnij folder zmieniony poza wiedzą ImageHub - do czasu odświeżenia
+     * jest obsługiwany bezpośrednio z Nextcloud
+     */
+    public void invalidateFolder(String folderPath) {
+        setPatch(folderPath, null);
+        requestRefresh(folderPath);
+    }
+
+    /**
+     * Nałóż łatkę na listing folderu (bazą jest poprzednia łatka lub bieżący snapshot).
+     * Folder nieobecny w cache'u pozostaje nieznany i jest obsługiwany z Nextcloud.
+     */
+    private void patchFolder(String folderPath, Consumer<List<NextcloudResource>> mutation) {
+        long sequence = mutationSequence.incrementAndGet();
+        recentMutations.put(folderPath, sequence);
+
+        patchedFolders.compute(folderPath, (path, existing) -> {
+            List<NextcloudResource> base = existing != null ? existing.resources() : folderCache.get(path);
+            if (base == null) {
+                return new FolderPatch(sequence, null);
+            }
+            List<NextcloudResource> patched = new ArrayList<>(base);
+            mutation.accept(patched);
+            return new FolderPatch(sequence, List.copyOf(patched));
+        });
+    }
+
+    private void setPatch(String folderPath, List<NextcloudResource> resources) {
+        long sequence = mutationSequence.incrementAndGet();
+        recentMutations.put(folderPath, sequence);
+        patchedFolders.put(folderPath, new FolderPatch(sequence, resources));
+    }
+
+    /**
+     * Optymistyczna łatka listingu folderu; brak listingu oznacza folder nieznany
+     */
+    private record FolderPatch(long sequence, List<NextcloudResource> resources) {
+    }
+
+    /**
+     * Dodaj folder do kolejki odświeżeń; seria zmian w oknie debounce daje jedno odświeżenie
+     */
+    private void requestRefresh(String folderPath) {
+        refreshRequests.incrementAndGet();
+        pendingRefreshes.add(folderPath);
+
+        long now = System.currentTimeMillis();
+        lastRefreshRequestAt = now;
+        if (refreshScheduled.compareAndSet(false, true)) {
+            firstRefreshRequestAt = now;
+            refreshScheduler.schedule(this::flushRefreshes, refreshDebounceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Wykonaj zaległe odświeżenia po upływie okna debounce
      */
-    private void synchronizeFolder(String path) throws Exception {
+    private void flushRefreshes() {
         try {
-            List<DavResource> resources = nextcloudClient.listFiles(path);
+            long now = System.currentTimeMillis();
+            long quietFor = now - lastRefreshRequestAt;
+
+            // Kolejne zmiany przesuwają odświeżenie, ale nie dłużej niż o kilka okien debounce
+            if (quietFor < refreshDebounceMs
+                    && now - firstRefreshRequestAt < refreshDebounceMs * MAX_REFRESH_DELAY_WINDOWS) {
+                refreshScheduler.schedule(this::flushRefreshes, refreshDebounceMs - quietFor, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            refreshScheduled.set(false);
+
+            List<String> paths = new ArrayList<>(pendingRefreshes);
+            pendingRefreshes.removeAll(paths);
+
+            // Odświeżenie folderu obejmuje jego poddrzewo - pomiń foldery, których przodek też czeka
+            paths.sort((a, b) -> Integer.compare(a.length(), b.length()));
+            List<String> coalesced = new ArrayList<>();
+            for (String path : paths) {
+                if (coalesced.stream().noneMatch(ancestor -> isWithin(path, ancestor))) {
+                    coalesced.add(path);
+                }
+            }
+
+            for (String path : coalesced) {
+                try {
+                    refreshFolder(path);
+                } catch (Exception e) {
+                    logger.warn("Nie można odświeżyć folderu {}: {}", path, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            refreshScheduled.set(false);
+            logger.error("Błąd podczas odświeżania cache'a folderów: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Wylistuj ponownie jeden folder (niezmienione podfoldery są przepisywane dzięki ETagom)
+     * i opublikuj snapshot z podmienionym poddrzewem - pozostała część drzewa jest współdzielona
+     * z poprzednim snapshotem
+     */
+    private void refreshFolder(String folderPath) throws Exception {
+        long startSequence = mutationSequence.get();
+
+        SyncRun run;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            run = new SyncRun(folderCache, folderPath, executor);
+            synchronizeFolder(folderPath, run);
+        }
+
+        synchronized (publishLock) {
+            folderCache = folderCache.withSubtree(folderPath, run.folders, run.etags);
+
+            // Łatki nałożone w trakcie odświeżania pozostają aktywne do kolejnego odświeżenia
+            patchedFolders.entrySet().removeIf(entry ->
+                    isWithin(entry.getKey(), folderPath) && entry.getValue().sequence() <= startSequence);
+            deletedPaths.entrySet().removeIf(entry ->
+                    isWithin(entry.getKey(), folderPath) && entry.getValue() <= startSequence);
+        }
+
+        schedulePersist();
+
+        refreshedFolders.incrementAndGet();
+        logger.debug("Odświeżono folder {} (wylistowano {} folderów)", folderPath, run.listedFolders.get());
+    }
 
-            // Konwertuj zasoby do formatu mapy i cache'uj je, filtrując ukryte foldery
-            List<Map<String, Object>> resourceMaps = resources.stream()
+    /**
+     * Sprawdź, czy ścieżka leży w poddrzewie folderu (lub jest nim samym)
+     */
+    private static boolean isWithin(String path, String folderPath) {
+        return folderPath.isEmpty() || path.equals(folderPath) || path.startsWith(folderPath + "/");
+    }
+
+    /**
+     * Rekurencyjnie synchronizuj folder i jego podfoldery.
+     * Podfoldery, których ETag nie zmienił się od poprzedniej synchronizacji,
+     * są przepisywane z poprzedniego snapshotu bez zapytania PROPFIND,
+     * a pozostałe są listowane równolegle w osobnych zadaniach.
+     */
+    private void synchronizeFolder(String path, SyncRun run) throws Exception {
+        try {
+            List<DavResource> resources = listWithPermit(path, run);
+            List<PendingFolder> pendingFolders = new ArrayList<>();
+
+            // Pierwszy element odpowiedzi PROPFIND to sam listowany katalog. ETagi podfolderów są zapisywane
+            // przez folder nadrzędny, a ETag folderu, od którego zaczyna się przebieg, trzeba zapisać tutaj
+            if (path.equals(run.rootPath) && !resources.isEmpty()) {
+                String rootEtag = resources.get(0).getEtag();
+                if (path.isEmpty() && rootEtag != null && rootEtag.equals(run.previous.getEtag(path))
+                        && run.previous.contains(path)) {
+                    // Nic się nie zmieniło w całym drzewie - dolistuj jedynie foldery,
+                    // których brakuje względem bieżącej polityki głębokości
+                    for (String missingPath : copySubtree(path, run)) {
+                        scheduleFolder(missingPath, null, run, pendingFolders);
+                    }
+                    run.unchanged = pendingFolders.isEmpty();
+                    awaitFolders(pendingFolders, run);
+                    return;
+                }
+                if (rootEtag != null) {
+                    run.etags.put(path, rootEtag);
+                }
+            }
+
+            // Konwertuj zasoby do zwartych wpisów i cache'uj je, filtrując ukryte foldery
+            List<NextcloudResource> folderResources = resources.stream()
                     .filter(resource -> !resource.getName().isEmpty())
                     .filter(resource -> !isHiddenResource(path, resource.getName()))
-                    .map(resource -> {
-                        Map<String, Object> resourceMap = new ConcurrentHashMap<>();
-                        resourceMap.put("name", resource.getName());
-                        resourceMap.put("isDirectory", resource.isDirectory());
-                        resourceMap.put("contentType", resource.getContentType());
-                        resourceMap.put("path", buildFullPath(path, resource.getName()));
-                        resourceMap.put("lastModified", resource.getModified());
-                        if (resource.getContentLength() > 0) {
-                            resourceMap.put("contentLength", resource.getContentLength());
-                        }
-                        return resourceMap;
-                    })
+                    .map(resource -> NextcloudResource.of(path, resource.getName(), resource.isDirectory(),
+                            resource.getContentType(), resource.getContentLength(), resource.getModified()))
                     .collect(Collectors.toList());
 
             // Cache'uj zawartość tego folderu
-            folderCache.put(path, resourceMaps);
+            run.folders.put(path, folderResources);
 
-            // Rekurencyjnie przetwarzaj podfoldery, ale tylko do określonej głębokości
+            // Rekurencyjnie przetwarzaj podfoldery, ale tylko do głębokości wynikającej z polityki,
             // aby uniknąć problemów z wydajnością
-            int currentDepth = path.isEmpty() ? 0 : path.split("/").length;
-            int maxDepth = 3; // Ograniczenie głębokości rekurencji
-
-            if (currentDepth < maxDepth) {
-                for (DavResource resource : resources) {
-                    if (resource.isDirectory() && !resource.getName().isEmpty()) {
-                        String resourceName = resource.getName();
-
-                        // Pomijaj ukryte foldery i ich zawartość
-                        if (isHiddenResource(path, resourceName)) {
-                            logger.debug("Pomijanie ukrytego folderu: {}", resourceName);
-                            continue;
-                        }
+            for (DavResource resource : resources) {
+                if (resource.isDirectory() && !resource.getName().isEmpty()) {
+                    String resourceName = resource.getName();
+
+                    // Pomijaj ukryte foldery i ich zawartość
+                    if (isHiddenResource(path, resourceName)) {
+                        logger.debug("Pomijanie ukrytego folderu: {}", resourceName);
+                        continue;
+                    }
+
+                    String subPath = buildFullPath(path, resourceName);
+                    if (!shouldSynchronize(subPath)) {
+                        continue;
+                    }
 
-                        String subPath = buildFullPath(path, resourceName);
+                    String etag = resource.getEtag();
 
-                        try {
-                            synchronizeFolder(subPath);
-                        } catch (Exception e) {
-                            logger.warn("Nie można zsynchronizować podfolderu {}: {}", subPath, e.getMessage());
-                            // Kontynuuj synchronizację pozostałych folderów, nawet jeśli jeden z nich się nie powiedzie
+                    // ETag katalogu zmienia się przy każdej zmianie w jego poddrzewie
+                    if (etag != null && etag.equals(run.previous.getEtag(subPath)) && run.previous.contains(subPath)) {
+                        logger.debug("Folder {} bez zmian (ETag {}), pomijanie listowania", subPath, etag);
+                        for (String missingPath : copySubtree(subPath, run)) {
+                            scheduleFolder(missingPath, null, run, pendingFolders);
                         }
+                        continue;
                     }
+
+                    scheduleFolder(subPath, etag, run, pendingFolders);
                 }
             }
+
+            awaitFolders(pendingFolders, run);
         } catch (Exception e) {
             logger.error("Błąd podczas synchronizacji folderu {}: {}", path, e.getMessage());
             throw e; // Przekazywanie wyjątku do obsługi przez wyższą warstwę
         }
     }
 
+    /**
+     * Zleć równoległe listowanie podfolderu, o ile nie przekroczono limitu folderów
+     */
+    private void scheduleFolder(String subPath, String etag, SyncRun run, List<PendingFolder> pendingFolders) {
+        // Limit liczby folderów chroni pamięć przy bardzo głębokich lub szerokich drzewach
+        if (run.scheduledFolders.incrementAndGet() > maxFolders) {
+            if (run.folderLimitReached.compareAndSet(false, true)) {
+                logger.warn("Osiągnięto limit {} folderów w snapshocie, kolejne foldery nie będą cache'owane",
+                        maxFolders);
+            }
+            return;
+        }
+
+        Future<Void> future = run.executor.submit(() -> {
+            synchronizeFolder(subPath, run);
+            return null;
+        });
+        pendingFolders.add(new PendingFolder(subPath, etag, future));
+    }
+
+    /**
+     * Poczekaj na zakończenie listowania podfolderów (blokowanie wątku wirtualnego jest tanie)
+     */
+    private void awaitFolders(List<PendingFolder> pendingFolders, SyncRun run) throws InterruptedException {
+        for (PendingFolder pending : pendingFolders) {
+            try {
+                pending.future().get();
+                if (pending.etag() != null) {
+                    run.etags.put(pending.path(), pending.etag());
+                }
+            } catch (ExecutionException e) {
+                logger.warn("Nie można zsynchronizować podfolderu {}: {}", pending.path(), e.getCause().getMessage());
+                // Zachowaj poprzednią zawartość, ale bez ETagu - następna synchronizacja spróbuje ponownie
+                copySubtree(pending.path(), run);
+                run.etags.remove(pending.path());
+                // Kontynuuj synchronizację pozostałych folderów, nawet jeśli jeden z nich się nie powiedzie
+            }
+        }
+    }
+
+    /**
+     * Sprawdź, czy folder powinien zostać zsynchronizowany zgodnie z polityką głębokości.
+     * Foldery prowadzące do prefiksów z nadpisaną głębokością są zawsze listowane,
+     * aby crawler mógł do nich dotrzeć.
+     */
+    private boolean shouldSynchronize(String folderPath) {
+        int depth = folderPath.isEmpty() ? 0 : folderPath.split("/").length;
+
+        for (Map.Entry<String, Integer> override : depthOverrides) {
+            String prefix = override.getKey();
+            if (folderPath.equals(prefix) || folderPath.startsWith(prefix + "/")) {
+                // Najdłuższy pasujący prefiks decyduje o głębokości
+                return isWithinDepth(depth, override.getValue());
+            }
+            if (prefix.startsWith(folderPath + "/")) {
+                return true;
+            }
+        }
+
+        return isWithinDepth(depth, defaultMaxDepth);
+    }
+
+    private boolean isWithinDepth(int depth, int maxDepth) {
+        // Wartość ujemna oznacza brak ograniczenia głębokości
+        return maxDepth < 0 || depth <= maxDepth;
+    }
+
+    /**
+     * Znormalizuj prefiksy nadpisań głębokości i posortuj je od najdłuższego
+     */
+    private static List<Map.Entry<String, Integer>> normalizeDepthOverrides(Map<String, Integer> overrides) {
+        List<Map.Entry<String, Integer>> normalized = new ArrayList<>();
+        if (overrides == null) {
+            return normalized;
+        }
+
+        overrides.forEach((prefix, depth) -> {
+            String trimmed = prefix.replaceAll("^/+|/+$", "");
+            if (!trimmed.isEmpty() && depth != null) {
+                normalized.add(Map.entry(trimmed, depth));
+            }
+        });
+        normalized.sort((a, b) -> Integer.compare(b.getKey().length(), a.getKey().length()));
+        return normalized;
+    }
+
+    /**
+     * Wylistuj folder, respektując limit jednoczesnych zapytań do Nextcloud
+     */
+    private List<DavResource> listWithPermit(String path, SyncRun run) throws Exception {
+        crawlPermits.acquire();
+        try {
+            int inFlight = run.inFlight.incrementAndGet();
+            run.peakInFlight.accumulateAndGet(inFlight, Math::max);
+            List<DavResource> resources = nextcloudClient.listFiles(path);
+            run.listedFolders.incrementAndGet();
+            return resources;
+        } finally {
+            run.inFlight.decrementAndGet();
+            crawlPermits.release();
+        }
+    }
+
+    /**
+     * Przepisz poddrzewo (zawartość folderów i ich ETagi) z poprzedniego snapshotu.
+     * Zwraca foldery, których brakuje w poprzednim snapshocie, a które zgodnie
+     * z bieżącą polityką głębokości powinny zostać wylistowane.
+     */
+    private List<String> copySubtree(String path, SyncRun run) {
+        List<String> missingFolders = new ArrayList<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(path);
+
+        while (!pending.isEmpty()) {
+            String current = pending.pop();
+            List<NextcloudResource> resources = run.previous.get(current);
+            if (resources == null) {
+                continue;
+            }
+
+            run.folders.put(current, resources);
+            String etag = run.previous.getEtag(current);
+            if (etag != null) {
+                run.etags.put(current, etag);
+            }
+            run.reusedFolders.incrementAndGet();
+
+            for (NextcloudResource resource : resources) {
+                if (resource.directory()) {
+                    String resourcePath = resource.path();
+                    if (run.previous.contains(resourcePath)) {
+                        pending.push(resourcePath);
+                    } else if (shouldSynchronize(resourcePath)) {
+                        missingFolders.add(resourcePath);
+                    }
+                }
+            }
+        }
+
+        return missingFolders;
+    }
+
+    /**
+     * Stan pojedynczego przebiegu synchronizacji - budowany obok publikowanego snapshotu
+     */
+    private static final class SyncRun {
+        private final FolderSnapshot previous;
+        // Folder, od którego zaczyna się przebieg ("" dla pełnej synchronizacji)
+        private final String rootPath;
+        private final ExecutorService executor;
+        private final Map<String, List<NextcloudResource>> folders = new ConcurrentHashMap<>();
+        private final Map<String, String> etags = new ConcurrentHashMap<>();
+        private final AtomicInteger listedFolders = new AtomicInteger();
+        private final AtomicInteger reusedFolders = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+        private final AtomicInteger scheduledFolders = new AtomicInteger(1);
+        private final AtomicBoolean folderLimitReached = new AtomicBoolean();
+        private volatile boolean unchanged;
+
+        private SyncRun(FolderSnapshot previous, String rootPath, ExecutorService executor) {
+            this.previous = previous;
+            this.rootPath = rootPath;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Podfolder zlecony do równoległego listowania
+     */
+    private record PendingFolder(String path, String etag, Future<Void> future) {
+    }
+
     /**
      * Pobierz cache'owaną zawartość folderu, upewniając się, że ukryte foldery są filtrowane
      */
-    public List<Map<String, Object>> getCachedFolderContents(String path) {
-        List<Map<String, Object>> resources = folderCache.getOrDefault(path, List.of());
+    public List<NextcloudResource> getCachedFolderContents(String path) {
+        return findCachedFolderContents(path).orElse(List.of());
+    }
+
+    /**
+     * Pobierz zawartość folderu z bieżącego snapshotu jednym odczytem
+     * (sprawdzenie obecności i odczyt widzą ten sam snapshot)
+     */
+    public Optional<List<NextcloudResource>> findCachedFolderContents(String path) {
+        if (isDeleted(path)) {
+            return Optional.empty();
+        }
+
+        // Łatka nałożona po zmianie wykonanej przez ImageHub ma pierwszeństwo przed snapshotem
+        FolderPatch patch = patchedFolders.get(path);
+        List<NextcloudResource> resources = patch != null ? patch.resources() : folderCache.get(path);
+        if (resources == null) {
+            return Optional.empty();
+        }
 
         // Dodatkowe filtrowanie na wypadek, gdyby ukryte foldery znalazły się w cache'u
         if (path.isEmpty()) {
-            return resources.stream()
-                    .filter(resource -> !HIDDEN_FOLDERS.contains((String) resource.get("name")))
-                    .collect(Collectors.toList());
+            return Optional.of(resources.stream()
+                    .filter(resource -> !HIDDEN_FOLDERS.contains(resource.name()))
+                    .collect(Collectors.toList()));
         }
 
-        return resources;
+        return Optional.of(resources);
+    }
+
+    /**
+     * Znajdź pojedynczy zasób w cache'owanej zawartości folderu nadrzędnego
+     * (Optional.empty() - folder nadrzędny nie jest w cache'u lub nie zawiera zasobu)
+     */
+    public Optional<NextcloudResource> findCachedResource(String path) {
+        String name = extractName(path);
+        return findCachedFolderContents(extractParentPath(path))
+                .flatMap(resources -> resources.stream()
+                        .filter(resource -> resource.name().equals(name))
+                        .findFirst());
     }
 
     /**
      * Sprawdź, czy ścieżka istnieje w cache
      */
     public boolean isPathCached(String path) {
-        return folderCache.containsKey(path);
+        if (isDeleted(path)) {
+            return false;
+        }
+        FolderPatch patch = patchedFolders.get(path);
+        return patch != null ? patch.resources() != null : folderCache.contains(path);
     }
 
     /**
@@ -235,6 +903,15 @@ public class NextcloudSyncService {
         return false;
     }
 
+    private String extractParentPath(String path) {
+        int lastSlashIndex = path.lastIndexOf('/');
+        return lastSlashIndex == -1 ? "" : path.substring(0, lastSlashIndex);
+    }
+
+    private String extractName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
     /**
      * Zbuduj pełną ścieżkę z ścieżki rodzica i nazwy zasobu
      */
@@ -264,6 +941,18 @@ public class NextcloudSyncService {
         status.put("inProgress", synchronizationInProgress);
         status.put("consecutiveErrors", consecutiveErrors);
         status.put("cacheSize", folderCache.size());
+        status.put("lastSyncListedFolders", lastSyncListedFolders);
+        status.put("lastSyncReusedFolders", lastSyncReusedFolders);
+        status.put("lastCrawlDurationMs", lastCrawlDurationMs);
+        status.put("lastCrawlPeakConcurrency", lastCrawlPeakConcurrency);
+        status.put("maxCrawlConcurrency", maxConcurrency);
+        status.put("snapshotLoadedFromDisk", snapshotLoadedFromDisk);
+        status.put("maxDepth", defaultMaxDepth);
+        status.put("depthOverrides", depthOverrides.size());
+        status.put("patchedFolders", patchedFolders.size());
+        status.put("deletedPaths", deletedPaths.size());
+        status.put("refreshRequests", refreshRequests.get());
+        status.put("refreshedFolders", refreshedFolders.get());
         return status;
     }
 }
\ No newline at end of file
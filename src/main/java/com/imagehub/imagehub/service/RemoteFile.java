@@ -0,0 +1,79 @@
+package com.imagehub.imagehub.service;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Otwarta odpowiedź GET z Nextcloud - strumień treści pliku wraz ze statusem i nagłówkami
+ * (przy żądaniach warunkowych lub zakresu status może być 206, 304, 412 lub 416).
+ *
+ * Po odczytaniu strumienia do końca połączenie wraca do puli; {@link #abort()} przerywa
+ * żądanie (np. gdy klient ImageHub rozłączył się w trakcie pobierania) bez doczytywania reszty pliku.
+ */
+public final class RemoteFile implements Closeable {
+
+    private final HttpRequestBase request;
+    private final CloseableHttpResponse response;
+    private final InputStream inputStream;
+    private final long contentLength;
+    private final String contentType;
+
+    RemoteFile(HttpRequestBase request, CloseableHttpResponse response, InputStream inputStream,
+               long contentLength, String contentType) {
+        this.request = request;
+        this.response = response;
+        this.inputStream = inputStream;
+        this.contentLength = contentLength;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Status odpowiedzi Nextcloud
+     */
+    public int getStatus() {
+        return response.getStatusLine().getStatusCode();
+    }
+
+    /**
+     * Wartość nagłówka odpowiedzi Nextcloud (np. ETag, Last-Modified, Content-Range) lub null
+     */
+    public String getHeader(String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Rozmiar treści w bajtach lub -1, jeśli serwer go nie podał
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Typ zawartości z odpowiedzi Nextcloud lub null
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Przerwij żądanie do Nextcloud - połączenie zostaje zamknięte zamiast doczytywania treści
+     */
+    public void abort() {
+        request.abort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        response.close();
+    }
+}
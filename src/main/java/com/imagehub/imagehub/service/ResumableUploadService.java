@@ -0,0 +1,203 @@
+package com.imagehub.imagehub.service;
+
+import com.imagehub.imagehub.config.NextcloudProperties;
+import com.imagehub.imagehub.model.UploadSession;
+import com.imagehub.imagehub.model.User;
+import com.imagehub.imagehub.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wznawialne uploady dużych plików.
+ *
+ * Klient tworzy sesję, wysyła fragmenty w dowolnej kolejności (także ponownie po zerwaniu połączenia),
+ * sprawdza, których brakuje, i zatwierdza upload. Każdy fragment jest przesyłany strumieniowo prosto
+ * do katalogu tymczasowego w Nextcloud (chunked upload v2), a stan sesji jest zapisany w bazie - przerwany
+ * upload można wznowić także po restarcie ImageHub. Zatwierdzenie składa plik po stronie Nextcloud.
+ *
+ * Przesyłanie fragmentów i składanie pliku trwają długo, więc nie są wykonywane w transakcji -
+ * zmiany stanu sesji to pojedyncze zapytania repozytorium.
+ */
+@Service
+public class ResumableUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    // Nextcloud wymaga fragmentów co najmniej 5 MB (poza ostatnim) i najwyżej 10000 fragmentów
+    private static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_CHUNKS = 10000;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final NextcloudClient nextcloudClient;
+    private final NextcloudService nextcloudService;
+    private final FolderPermissionService folderPermissionService;
+    private final long chunkSize;
+    private final long sessionTtlMs;
+
+    @Autowired
+    public ResumableUploadService(UploadSessionRepository uploadSessionRepository, NextcloudClient nextcloudClient,
+                                  NextcloudService nextcloudService, FolderPermissionService folderPermissionService,
+                                  NextcloudProperties properties) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.nextcloudClient = nextcloudClient;
+        this.nextcloudService = nextcloudService;
+        this.folderPermissionService = folderPermissionService;
+        NextcloudProperties.Upload upload = properties.getUpload();
+        this.chunkSize = Math.max(MIN_CHUNK_SIZE, upload.getResumableChunkSizeMb() * 1024L * 1024L);
+        this.sessionTtlMs = TimeUnit.HOURS.toMillis(Math.max(1, upload.getResumableSessionTtlHours()));
+    }
+
+    /**
+     * Utwórz sesję uploadu pliku do podanej ścieżki
+     */
+    public UploadSession createSession(String targetPath, long fileSize, String contentType,
+                                       User currentUser) throws IOException {
+        if (!folderPermissionService.canUserWriteFolder(currentUser, extractParentPath(targetPath))) {
+            logger.warn("User {} attempted to upload file to {} without permission", currentUser.getUsername(), targetPath);
+            throw new SecurityException("No write permission for this folder");
+        }
+        if (fileSize <= 0) {
+            throw new IllegalArgumentException("Rozmiar pliku musi być dodatni");
+        }
+
+        // Bardzo duże pliki dostają większe fragmenty, aby zmieścić się w limicie Nextcloud
+        long sessionChunkSize = Math.max(chunkSize, (fileSize + MAX_CHUNKS - 1) / MAX_CHUNKS);
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), currentUser, targetPath,
+                contentType, fileSize, sessionChunkSize);
+        nextcloudClient.startChunkedUpload(uploadId(session), targetPath);
+        uploadSessionRepository.save(session);
+
+        logger.info("Utworzono sesję uploadu {} dla {} ({} B, {} fragmentów) przez użytkownika {}",
+                session.getId(), targetPath, fileSize, session.getTotalChunks(), currentUser.getUsername());
+        return session;
+    }
+
+    /**
+     * Sesja użytkownika
+     *
+     * @throws NoSuchElementException gdy sesja nie istnieje lub należy do innego użytkownika
+     */
+    @Transactional(readOnly = true)
+    public UploadSession getSession(String id, User currentUser) {
+        return findSession(id, currentUser);
+    }
+
+    /**
+     * Prześlij fragment strumieniowo do Nextcloud i oznacz go jako odebrany.
+     * Ponowne wysłanie odebranego fragmentu nadpisuje go (np. gdy klient nie dostał potwierdzenia).
+     */
+    public UploadSession uploadChunk(String id, int index, InputStream data, long contentLength,
+                                     User currentUser) throws IOException {
+        UploadSession session = findSession(id, currentUser);
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new IllegalArgumentException("Niepoprawny numer fragmentu: " + index);
+        }
+        long expectedLength = session.getExpectedChunkLength(index);
+        if (contentLength != expectedLength) {
+            throw new IllegalArgumentException("Fragment " + index + " powinien mieć " + expectedLength
+                    + " B, otrzymano " + contentLength + " B");
+        }
+
+        // Nextcloud numeruje fragmenty od 1
+        nextcloudClient.uploadChunk(uploadId(session), session.getTargetPath(), index + 1, data, contentLength);
+
+        uploadSessionRepository.markChunkReceived(id, index);
+        uploadSessionRepository.touch(id, System.currentTimeMillis());
+        return findSession(id, currentUser);
+    }
+
+    /**
+     * Złóż plik z fragmentów po stronie Nextcloud i zakończ sesję
+     *
+     * @throws IllegalStateException gdy brakuje fragmentów
+     */
+    public void commit(String id, User currentUser) throws IOException {
+        UploadSession session = findSession(id, currentUser);
+        if (!session.isComplete()) {
+            throw new IllegalStateException("Brakuje " + getMissingChunks(session).size() + " fragmentów");
+        }
+
+        nextcloudClient.completeChunkedUpload(uploadId(session), session.getTargetPath(), session.getFileSize());
+        uploadSessionRepository.delete(session);
+        nextcloudService.applyLocalUpload(session.getTargetPath(), session.getFileSize(), session.getContentType());
+
+        logger.info("Zakończono upload {} do {} ({} B)", id, session.getTargetPath(), session.getFileSize());
+    }
+
+    /**
+     * Przerwij sesję i usuń wysłane fragmenty
+     */
+    public void abort(String id, User currentUser) {
+        UploadSession session = findSession(id, currentUser);
+        nextcloudClient.abortChunkedUpload(uploadId(session));
+        uploadSessionRepository.delete(session);
+        logger.info("Przerwano upload {} do {}", id, session.getTargetPath());
+    }
+
+    /**
+     * Usuń sesje nieaktywne dłużej niż TTL wraz z fragmentami w Nextcloud
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void removeExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByUpdatedAtBefore(System.currentTimeMillis() - sessionTtlMs);
+        for (UploadSession session : expired) {
+            nextcloudClient.abortChunkedUpload(uploadId(session));
+            uploadSessionRepository.delete(session);
+            logger.info("Usunięto wygasłą sesję uploadu {} ({})", session.getId(), session.getTargetPath());
+        }
+    }
+
+    /**
+     * Stan sesji dla klienta - w tym brakujące fragmenty do wysłania
+     */
+    public Map<String, Object> toMap(UploadSession session) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", session.getId());
+        map.put("path", session.getTargetPath());
+        map.put("fileSize", session.getFileSize());
+        map.put("chunkSize", session.getChunkSize());
+        map.put("totalChunks", session.getTotalChunks());
+        map.put("receivedChunks", session.getReceivedChunks().size());
+        map.put("missingChunks", getMissingChunks(session));
+        map.put("expiresAt", session.getUpdatedAt() + sessionTtlMs);
+        return map;
+    }
+
+    private List<Integer> getMissingChunks(UploadSession session) {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            if (!session.getReceivedChunks().contains(i)) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    private UploadSession findSession(String id, User currentUser) {
+        return uploadSessionRepository.findById(id)
+                .filter(session -> session.getUser().getId().equals(currentUser.getId()))
+                .orElseThrow(() -> new NoSuchElementException("Sesja uploadu nie istnieje: " + id));
+    }
+
+    private static String uploadId(UploadSession session) {
+        return "imagehub-" + session.getId();
+    }
+
+    private static String extractParentPath(String path) {
+        int lastSlashIndex = path.lastIndexOf('/');
+        return lastSlashIndex == -1 ? "" : path.substring(0, lastSlashIndex);
+    }
+}
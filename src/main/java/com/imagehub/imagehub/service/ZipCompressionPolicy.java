@@ -0,0 +1,56 @@
+package com.imagehub.imagehub.service;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Wybór metody kompresji wpisów archiwum ZIP.
+ *
+ * Formaty już skompresowane (JPEG, PNG, WebP, wideo, archiwa) nie zyskują na DEFLATE,
+ * więc są zapisywane bez kompresji (STORED); kompresowane są tylko tekst, metadane
+ * i formaty nieskompresowane (np. TIFF, BMP).
+ */
+final class ZipCompressionPolicy {
+
+    private static final Set<String> INCOMPRESSIBLE_EXTENSIONS = Set.of(
+            // obrazy
+            "jpg", "jpeg", "jpe", "jfif", "png", "webp", "gif", "heic", "heif", "avif", "jxl",
+            // wideo i audio
+            "mp4", "m4v", "mov", "avi", "mkv", "webm", "wmv", "mpg", "mpeg", "mp3", "m4a", "aac", "ogg", "opus",
+            // archiwa
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst"
+    );
+
+    private static final Set<String> INCOMPRESSIBLE_CONTENT_TYPES = Set.of(
+            "image/jpeg", "image/png", "image/webp", "image/gif", "image/heic", "image/heif", "image/avif",
+            "image/jxl", "application/zip", "application/gzip", "application/x-7z-compressed",
+            "application/vnd.rar", "application/x-rar-compressed"
+    );
+
+    private ZipCompressionPolicy() {
+    }
+
+    /**
+     * Sprawdź, czy plik należy zapisać bez kompresji
+     *
+     * @param fileName    nazwa pliku (rozszerzenie)
+     * @param contentType typ zawartości z Nextcloud lub null
+     */
+    static boolean shouldStore(String fileName, String contentType) {
+        if (contentType != null) {
+            String mimeType = contentType.toLowerCase(Locale.ROOT);
+            int parametersStart = mimeType.indexOf(';');
+            if (parametersStart >= 0) {
+                mimeType = mimeType.substring(0, parametersStart).trim();
+            }
+            if (INCOMPRESSIBLE_CONTENT_TYPES.contains(mimeType)
+                    || mimeType.startsWith("video/") || mimeType.startsWith("audio/")) {
+                return true;
+            }
+        }
+
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex >= 0
+                && INCOMPRESSIBLE_EXTENSIONS.contains(fileName.substring(dotIndex + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,249 @@
+package com.imagehub.imagehub.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dyskowy cache gotowych archiwów ZIP folderów.
+ *
+ * Kluczem jest skrót z ETagu folderu (zmienia się przy każdej zmianie w poddrzewie) oraz listy
+ * wpisów widocznych dla użytkownika - użytkownicy widzący te same pliki współdzielą archiwum.
+ * Archiwa są usuwane od najdawniej używanych po przekroczeniu limitu rozmiaru.
+ */
+class ZipExportCache {
+    private static final Logger logger = LoggerFactory.getLogger(ZipExportCache.class);
+
+    // Zmiana formatu archiwów (np. polityki kompresji) unieważnia poprzednie wpisy
+    private static final String KEY_VERSION = "1";
+    private static final String FILE_SUFFIX = ".zip";
+    // Archiwa użyte niedawno nie są usuwane - mogą być właśnie wysyłane do klienta
+    private static final long EVICTION_GRACE_MS = 60_000;
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final Map<String, CachedArchive> archives = new ConcurrentHashMap<>();
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ZipExportCache(Path directory, long maxSizeBytes) throws IOException {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+        Files.createDirectories(directory);
+        loadExisting();
+    }
+
+    /**
+     * Zarejestruj archiwa pozostałe po poprzednim uruchomieniu i usuń niedokończone pliki tymczasowe
+     */
+    private void loadExisting() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(FILE_SUFFIX)) {
+                    String key = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+                    long size = Files.size(file);
+                    archives.put(key, new CachedArchive(file, size, Files.getLastModifiedTime(file).toMillis()));
+                    totalSize.addAndGet(size);
+                } else {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        evictIfNeeded();
+        logger.info("Cache archiwów ZIP: {} plików, {} MB", archives.size(), totalSize.get() / (1024 * 1024));
+    }
+
+    /**
+     * Wylicz klucz archiwum z ETagu folderu i listy widocznych wpisów
+     */
+    static String key(String folderPath, String folderEtag, List<String> visibleEntries) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, KEY_VERSION);
+            update(digest, folderPath);
+            update(digest, folderEtag);
+            for (String entry : visibleEntries) {
+                update(digest, entry);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 niedostępny", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Znajdź archiwum w cache'u i oznacz je jako ostatnio używane
+     */
+    CachedArchive find(String key) {
+        CachedArchive archive = archives.computeIfPresent(key,
+                (k, existing) -> new CachedArchive(existing.file(), existing.size(), System.currentTimeMillis()));
+        if (archive == null || !Files.isRegularFile(archive.file())) {
+            if (archive != null) {
+                remove(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return archive;
+    }
+
+    /**
+     * Rozpocznij zapis archiwum - treść trafia do pliku tymczasowego, a do cache'a dopiero po {@link Entry#commit()}
+     */
+    Entry create(String key) throws IOException {
+        Path tempFile = Files.createTempFile(directory, key, ".tmp");
+        return new Entry(key, tempFile);
+    }
+
+    private void put(String key, Path tempFile) throws IOException {
+        long size = Files.size(tempFile);
+        if (size > maxSizeBytes) {
+            Files.deleteIfExists(tempFile);
+            logger.debug("Archiwum {} ({} B) przekracza limit cache'a, pomijanie", key, size);
+            return;
+        }
+
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        CachedArchive previous = archives.put(key, new CachedArchive(file, size, System.currentTimeMillis()));
+        totalSize.addAndGet(size - (previous != null ? previous.size() : 0));
+        evictIfNeeded();
+    }
+
+    private void remove(String key) {
+        CachedArchive archive = archives.remove(key);
+        if (archive != null) {
+            totalSize.addAndGet(-archive.size());
+            try {
+                Files.deleteIfExists(archive.file());
+            } catch (IOException e) {
+                logger.warn("Nie można usunąć archiwum {}: {}", archive.file(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Usuń najdawniej używane archiwa, aż łączny rozmiar zmieści się w limicie
+     */
+    private synchronized void evictIfNeeded() {
+        if (totalSize.get() <= maxSizeBytes) {
+            return;
+        }
+
+        long graceLimit = System.currentTimeMillis() - EVICTION_GRACE_MS;
+        List<Map.Entry<String, CachedArchive>> byLastAccess = new ArrayList<>(archives.entrySet());
+        byLastAccess.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess()));
+        for (Map.Entry<String, CachedArchive> entry : byLastAccess) {
+            if (totalSize.get() <= maxSizeBytes || entry.getValue().lastAccess() > graceLimit) {
+                break;
+            }
+            remove(entry.getKey());
+            logger.debug("Usunięto z cache'a archiwum {}", entry.getKey());
+        }
+    }
+
+    Map<String, Object> getMetrics() {
+        return Map.of(
+                "archives", archives.size(),
+                "sizeBytes", totalSize.get(),
+                "maxSizeBytes", maxSizeBytes,
+                "hits", hits.get(),
+                "misses", misses.get());
+    }
+
+    /**
+     * Archiwum zapisane w cache'u
+     */
+    record CachedArchive(Path file, long size, long lastAccess) {
+    }
+
+    /**
+     * Archiwum w trakcie zapisu
+     */
+    final class Entry implements AutoCloseable {
+        private final String key;
+        private final Path tempFile;
+        private final OutputStream out;
+        private boolean committed;
+
+        private Entry(String key, Path tempFile) throws IOException {
+            this.key = key;
+            this.tempFile = tempFile;
+            this.out = Files.newOutputStream(tempFile);
+        }
+
+        /**
+         * Strumień zapisujący jednocześnie do wskazanego strumienia (np. odpowiedzi HTTP) i do cache'a
+         */
+        OutputStream teeWith(OutputStream target) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    target.write(b);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    target.write(b, off, len);
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    target.flush();
+                    out.flush();
+                }
+            };
+        }
+
+        /**
+         * Zapisz kompletne archiwum w cache'u
+         */
+        void commit() throws IOException {
+            out.close();
+            put(key, tempFile);
+            committed = true;
+        }
+
+        /**
+         * Usuń plik tymczasowy, jeśli archiwum nie zostało zapisane (np. po błędzie eksportu)
+         */
+        @Override
+        public void close() {
+            if (committed) {
+                return;
+            }
+            try {
+                out.close();
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                logger.warn("Nie można usunąć pliku tymczasowego {}: {}", tempFile, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.imagehub.imagehub.service;
+
+import com.imagehub.imagehub.config.NextcloudProperties;
+import com.imagehub.imagehub.model.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Zadania eksportu ZIP wykonywane w tle.
+ *
+ * Duże zaznaczenia nie blokują wątku serwletu przez cały czas tworzenia archiwum: klient zleca
+ * eksport, odpytuje postęp (bajty i wpisy), a następnie pobiera gotowy plik. Zadania wykonuje
+ * ograniczona pula wątków z ograniczoną kolejką, liczba aktywnych zadań użytkownika jest limitowana,
+ * a gotowe archiwa są usuwane po upływie TTL od zakończenia zadania.
+ */
+@Service
+public class ZipExportJobService {
+    private static final Logger logger = LoggerFactory.getLogger(ZipExportJobService.class);
+
+    /**
+     * Stan zadania eksportu
+     */
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        boolean isActive() {
+            return this == QUEUED || this == RUNNING;
+        }
+    }
+
+    private final NextcloudService nextcloudService;
+    private final int maxJobsPerUser;
+    private final long ttlMs;
+    private final Path jobDirectory;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ZipExportJobService(NextcloudService nextcloudService, NextcloudProperties properties) throws IOException {
+        this.nextcloudService = nextcloudService;
+        NextcloudProperties.Export export = properties.getExport();
+        this.maxJobsPerUser = Math.max(1, export.getJobMaxPerUser());
+        this.ttlMs = TimeUnit.MINUTES.toMillis(Math.max(1, export.getJobTtlMinutes()));
+        this.jobDirectory = prepareJobDirectory(export.getJobDir());
+
+        int threads = Math.max(1, export.getJobThreads());
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, export.getJobQueueCapacity())), runnable -> {
+            Thread thread = new Thread(runnable, "zip-export-job-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("🔹 Usługa zadań eksportu ZIP zainicjalizowana ({} wątków, katalog: {})", threads, jobDirectory);
+    }
+
+    /**
+     * Utwórz katalog archiwów i usuń pliki pozostałe po poprzednim uruchomieniu (zadania są tylko w pamięci)
+     */
+    private static Path prepareJobDirectory(String jobDir) throws IOException {
+        if (jobDir == null || jobDir.isBlank()) {
+            return Files.createTempDirectory("imagehub-export-jobs");
+        }
+
+        Path directory = Files.createDirectories(Path.of(jobDir));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        return directory;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        for (ExportJob job : jobs.values()) {
+            deleteArtifact(job);
+        }
+    }
+
+    /**
+     * Zleć eksport ścieżek do archiwum ZIP
+     *
+     * @throws IllegalStateException      gdy użytkownik ma już maksymalną liczbę aktywnych zadań
+     * @throws RejectedExecutionException gdy kolejka zadań jest pełna
+     */
+    public ExportJob submit(List<String> paths, User currentUser) {
+        ExportJob job;
+        synchronized (this) {
+            long activeJobs = jobs.values().stream()
+                    .filter(existing -> existing.username.equals(currentUser.getUsername()))
+                    .filter(existing -> existing.status.isActive())
+                    .count();
+            if (activeJobs >= maxJobsPerUser) {
+                throw new IllegalStateException("Przekroczono limit aktywnych eksportów (" + maxJobsPerUser + ")");
+            }
+
+            job = new ExportJob(UUID.randomUUID().toString(), currentUser.getUsername(), List.copyOf(paths));
+            job.future = executor.submit(() -> run(job, currentUser));
+            jobs.put(job.id, job);
+        }
+
+        logger.info("Zlecono eksport ZIP {} ({} elementów) dla użytkownika {}",
+                job.id, paths.size(), currentUser.getUsername());
+        return job;
+    }
+
+    private void run(ExportJob job, User currentUser) {
+        synchronized (job) {
+            // Zadanie anulowane w kolejce
+            if (job.status != Status.QUEUED) {
+                return;
+            }
+            job.status = Status.RUNNING;
+            job.startedAt = System.currentTimeMillis();
+        }
+
+        try {
+            job.file = Files.createTempFile(jobDirectory, "export-", ".zip");
+            try (OutputStream out = new CountingOutputStream(Files.newOutputStream(job.file), job.bytesWritten)) {
+                nextcloudService.writeZipFromMultiplePaths(job.paths, currentUser, out, job);
+            }
+            finish(job, Status.COMPLETED, null);
+            logger.info("Eksport ZIP {} zakończony: {} wpisów, {} B", job.id, job.entriesWritten.get(),
+                    job.bytesWritten.get());
+        } catch (Exception e) {
+            if (job.status == Status.CANCELLED || Thread.currentThread().isInterrupted()) {
+                finish(job, Status.CANCELLED, null);
+            } else {
+                logger.error("Błąd eksportu ZIP {}: {}", job.id, e.getMessage(), e);
+                finish(job, Status.FAILED, e instanceof SecurityException
+                        ? e.getMessage() : "Nie udało się utworzyć archiwum ZIP");
+            }
+        }
+    }
+
+    private void finish(ExportJob job, Status status, String error) {
+        synchronized (job) {
+            if (job.status.isActive()) {
+                job.status = status;
+                job.error = error;
+            }
+            if (job.finishedAt == 0) {
+                job.finishedAt = System.currentTimeMillis();
+            }
+        }
+        if (job.status != Status.COMPLETED) {
+            deleteArtifact(job);
+        }
+    }
+
+    /**
+     * Zadanie użytkownika lub null - zadania innych użytkowników są niewidoczne
+     */
+    public ExportJob getJob(String id, User currentUser) {
+        ExportJob job = jobs.get(id);
+        if (job == null || !job.username.equals(currentUser.getUsername())) {
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * Anuluj zadanie (lub usuń zakończone) wraz z archiwum
+     */
+    public boolean cancel(String id, User currentUser) {
+        ExportJob job = getJob(id, currentUser);
+        if (job == null) {
+            return false;
+        }
+
+        finish(job, Status.CANCELLED, null);
+        if (job.future != null) {
+            job.future.cancel(true);
+            executor.remove((Runnable) job.future);
+        }
+        jobs.remove(id);
+        deleteArtifact(job);
+        logger.info("Eksport ZIP {} anulowany przez użytkownika {}", id, currentUser.getUsername());
+        return true;
+    }
+
+    /**
+     * Usuń zadania zakończone dawniej niż TTL wraz z archiwami
+     */
+    @Scheduled(fixedRate = 60000)
+    public void evictExpiredJobs() {
+        long now = System.currentTimeMillis();
+        for (ExportJob job : jobs.values()) {
+            if (!job.status.isActive() && job.finishedAt + ttlMs < now) {
+                jobs.remove(job.id);
+                deleteArtifact(job);
+                logger.debug("Usunięto wygasły eksport ZIP {}", job.id);
+            }
+        }
+    }
+
+    private void deleteArtifact(ExportJob job) {
+        Path file = job.file;
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Nie można usunąć archiwum eksportu {}: {}", file, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("jobs", jobs.size());
+        metrics.put("running", executor.getActiveCount());
+        metrics.put("queued", executor.getQueue().size());
+        return metrics;
+    }
+
+    /**
+     * Zadanie eksportu wraz z postępem
+     */
+    public final class ExportJob implements ZipExportProgress {
+        private final String id;
+        private final String username;
+        private final List<String> paths;
+        private final long createdAt = System.currentTimeMillis();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final AtomicInteger entriesWritten = new AtomicInteger();
+        private volatile int totalEntries = -1;
+        private volatile Status status = Status.QUEUED;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile String error;
+        private volatile Path file;
+        private volatile Future<?> future;
+
+        private ExportJob(String id, String username, List<String> paths) {
+            this.id = id;
+            this.username = username;
+            this.paths = paths;
+        }
+
+        @Override
+        public void planned(int totalEntries) {
+            this.totalEntries = totalEntries;
+        }
+
+        @Override
+        public void entryWritten() {
+            entriesWritten.incrementAndGet();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Gotowe archiwum lub null, jeśli zadanie nie zakończyło się sukcesem
+         */
+        public Path getFile() {
+            return status == Status.COMPLETED ? file : null;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.get();
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("status", status.name());
+            map.put("items", paths.size());
+            map.put("entriesWritten", entriesWritten.get());
+            if (totalEntries >= 0) {
+                map.put("totalEntries", totalEntries);
+            }
+            map.put("bytesWritten", bytesWritten.get());
+            map.put("createdAt", createdAt);
+            if (startedAt > 0) {
+                map.put("startedAt", startedAt);
+            }
+            if (finishedAt > 0) {
+                map.put("finishedAt", finishedAt);
+                map.put("expiresAt", finishedAt + ttlMs);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Strumień zliczający zapisane bajty na potrzeby postępu zadania (zapis jest już buforowany przez eksport)
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final AtomicLong counter;
+
+        private CountingOutputStream(OutputStream out, AtomicLong counter) {
+            super(out);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            counter.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            counter.addAndGet(len);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.imagehub.imagehub.service;
+
+/**
+ * Postęp zapisu archiwum ZIP - liczba zaplanowanych i zapisanych wpisów
+ */
+interface ZipExportProgress {
+
+    ZipExportProgress NONE = new ZipExportProgress() {
+    };
+
+    /**
+     * Wpisy archiwum zostały zebrane (przed pobieraniem plików)
+     */
+    default void planned(int totalEntries) {
+    }
+
+    /**
+     * Kolejny wpis został dopisany do archiwum
+     */
+    default void entryWritten() {
+    }
+}
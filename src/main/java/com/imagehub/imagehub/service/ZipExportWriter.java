@@ -0,0 +1,324 @@
+package com.imagehub.imagehub.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Zapis archiwum ZIP z równoległym pobieraniem plików z wyprzedzeniem.
+ *
+ * Kolejne pliki są pobierane z Nextcloud współbieżnie (najwyżej {@code prefetchDepth} naraz)
+ * do buforów, a jeden wątek zapisujący dopisuje wpisy do archiwum w kolejności ich dodania,
+ * więc wynik jest deterministyczny. Bufory mieszczą się w pamięci w ramach wspólnego budżetu
+ * eksportu; po jego przekroczeniu treść pliku trafia do pliku tymczasowego.
+ *
+ * Podczas pobierania liczona jest suma CRC32 i rozmiar pliku, dzięki czemu formaty już
+ * skompresowane (zob. {@link ZipCompressionPolicy}) są zapisywane metodą STORED.
+ */
+final class ZipExportWriter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ZipExportWriter.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Otwiera plik z Nextcloud. Nie sprawdza uprawnień - wywołujący przekazuje tylko ścieżki,
+     * do których użytkownik ma dostęp (sprawdzane przy zbieraniu plików archiwum)
+     */
+    @FunctionalInterface
+    interface FileOpener {
+        RemoteFile open(String path) throws Exception;
+    }
+
+    private final ZipOutputStream zos;
+    private final FileOpener opener;
+    private final int prefetchDepth;
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private final ZipExportProgress progress;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Deque<PendingEntry> pending = new ArrayDeque<>();
+    private final Set<PrefetchBuffer> liveBuffers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong memoryInUse = new AtomicLong();
+    private int pendingFiles;
+    private volatile boolean closed;
+
+    ZipExportWriter(ZipOutputStream zos, FileOpener opener, int prefetchDepth, long memoryBudget,
+                    Path spillDirectory) {
+        this(zos, opener, prefetchDepth, memoryBudget, spillDirectory, ZipExportProgress.NONE);
+    }
+
+    ZipExportWriter(ZipOutputStream zos, FileOpener opener, int prefetchDepth, long memoryBudget,
+                    Path spillDirectory, ZipExportProgress progress) {
+        this.zos = zos;
+        this.opener = opener;
+        this.prefetchDepth = Math.max(1, prefetchDepth);
+        this.memoryBudget = Math.max(0, memoryBudget);
+        this.spillDirectory = spillDirectory;
+        this.progress = progress;
+    }
+
+    /**
+     * Dodaj wpis katalogu (zapisywany po wszystkich wcześniej dodanych wpisach)
+     */
+    void addDirectory(String entryPath) throws Exception {
+        pending.addLast(new PendingEntry(entryPath + "/", null));
+    }
+
+    /**
+     * Dodaj plik - jego pobieranie rusza od razu, o ile okno pobierania z wyprzedzeniem nie jest pełne
+     */
+    void addFile(String filePath, String entryPath) throws Exception {
+        // Pełne okno - zapisz najstarsze wpisy, zanim zlecisz kolejne pobieranie
+        while (pendingFiles >= prefetchDepth) {
+            writeNext();
+        }
+
+        Future<PrefetchBuffer> future = executor.submit(() -> prefetch(filePath));
+        pending.addLast(new PendingEntry(entryPath, future));
+        pendingFiles++;
+    }
+
+    /**
+     * Zapisz pozostałe wpisy i katalog centralny (bez zamykania strumienia docelowego)
+     */
+    void finish() throws Exception {
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        zos.finish();
+        zos.flush();
+    }
+
+    private void writeNext() throws Exception {
+        PendingEntry entry = pending.pollFirst();
+        if (entry == null) {
+            return;
+        }
+
+        if (entry.future() == null) {
+            zos.putNextEntry(new ZipEntry(entry.name()));
+            zos.closeEntry();
+            progress.entryWritten();
+            return;
+        }
+
+        pendingFiles--;
+        PrefetchBuffer buffer = await(entry.future());
+        try {
+            ZipEntry zipEntry = new ZipEntry(entry.name());
+            if (ZipCompressionPolicy.shouldStore(entry.name(), buffer.contentType)) {
+                // STORED wymaga rozmiaru i CRC przed treścią - są znane po pobraniu pliku
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(buffer.size);
+                zipEntry.setCompressedSize(buffer.size);
+                zipEntry.setCrc(buffer.crc.getValue());
+            }
+            zos.putNextEntry(zipEntry);
+            buffer.writeTo(zos);
+            zos.closeEntry();
+            progress.entryWritten();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private PrefetchBuffer await(Future<PrefetchBuffer> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Pobierz plik z Nextcloud do bufora (pamięć w ramach budżetu, następnie plik tymczasowy)
+     */
+    private PrefetchBuffer prefetch(String filePath) throws Exception {
+        PrefetchBuffer buffer = new PrefetchBuffer(filePath);
+        liveBuffers.add(buffer);
+
+        try (RemoteFile remoteFile = opener.open(filePath)) {
+            buffer.source = remoteFile;
+            buffer.contentType = remoteFile.getContentType();
+            InputStream in = remoteFile.getInputStream();
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.readNBytes(chunk, 0, CHUNK_SIZE)) > 0) {
+                if (closed) {
+                    // Eksport przerwany - nie doczytuj reszty pliku
+                    remoteFile.abort();
+                    throw new CancellationException("Eksport ZIP przerwany");
+                }
+                buffer.append(chunk, read);
+            }
+            buffer.complete();
+            return buffer;
+        } catch (Exception e) {
+            buffer.release();
+            throw e;
+        } finally {
+            buffer.source = null;
+        }
+    }
+
+    /**
+     * Zarezerwuj pamięć z budżetu eksportu; false, jeśli budżet jest wyczerpany
+     */
+    private boolean reserveMemory(long bytes) {
+        long current;
+        do {
+            current = memoryInUse.get();
+            if (current + bytes > memoryBudget) {
+                return false;
+            }
+        } while (!memoryInUse.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    /**
+     * Przerwij pobieranie i zwolnij wszystkie bufory (także po błędzie lub rozłączeniu klienta)
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (PendingEntry entry : pending) {
+            if (entry.future() != null) {
+                entry.future().cancel(true);
+            }
+        }
+        pending.clear();
+        // Przerwij trwające żądania do Nextcloud, aby zadania nie czekały na kolejne dane
+        for (PrefetchBuffer buffer : liveBuffers) {
+            RemoteFile source = buffer.source;
+            if (source != null) {
+                source.abort();
+            }
+        }
+        executor.close();
+
+        for (PrefetchBuffer buffer : new ArrayList<>(liveBuffers)) {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Wpis oczekujący na zapis - katalog (bez pobierania) lub plik pobierany z wyprzedzeniem
+     */
+    private record PendingEntry(String name, Future<PrefetchBuffer> future) {
+    }
+
+    /**
+     * Treść pobranego pliku: fragmenty w pamięci lub plik tymczasowy po przekroczeniu budżetu
+     */
+    private final class PrefetchBuffer {
+        private final String filePath;
+        private volatile RemoteFile source;
+        private final CRC32 crc = new CRC32();
+        private long size;
+        private String contentType;
+        private List<byte[]> chunks = new ArrayList<>();
+        private long reservedBytes;
+        private Path spillFile;
+        private OutputStream spillOut;
+        private boolean released;
+
+        private PrefetchBuffer(String filePath) {
+            this.filePath = filePath;
+        }
+
+        private void append(byte[] data, int length) throws IOException {
+            crc.update(data, 0, length);
+            size += length;
+
+            if (spillOut == null && reserveMemory(length)) {
+                reservedBytes += length;
+                chunks.add(Arrays.copyOf(data, length));
+                return;
+            }
+
+            if (spillOut == null) {
+                spill();
+            }
+            spillOut.write(data, 0, length);
+        }
+
+        /**
+         * Przenieś dotychczasową treść do pliku tymczasowego i zwolnij pamięć z budżetu
+         */
+        private void spill() throws IOException {
+            spillFile = spillDirectory != null
+                    ? Files.createTempFile(Files.createDirectories(spillDirectory), "zip-export-", ".part")
+                    : Files.createTempFile("zip-export-", ".part");
+            spillOut = new BufferedOutputStream(Files.newOutputStream(spillFile), CHUNK_SIZE);
+            for (byte[] chunk : chunks) {
+                spillOut.write(chunk);
+            }
+            chunks = new ArrayList<>();
+            memoryInUse.addAndGet(-reservedBytes);
+            reservedBytes = 0;
+            logger.debug("Budżet pamięci eksportu wyczerpany, plik {} buforowany na dysku", filePath);
+        }
+
+        private void complete() throws IOException {
+            if (spillOut != null) {
+                spillOut.close();
+                spillOut = null;
+            }
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            for (byte[] chunk : chunks) {
+                out.write(chunk);
+            }
+            if (spillFile != null) {
+                Files.copy(spillFile, out);
+            }
+        }
+
+        private synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            liveBuffers.remove(this);
+
+            chunks = List.of();
+            memoryInUse.addAndGet(-reservedBytes);
+            reservedBytes = 0;
+            try {
+                if (spillOut != null) {
+                    spillOut.close();
+                }
+                if (spillFile != null) {
+                    Files.deleteIfExists(spillFile);
+                }
+            } catch (IOException e) {
+                logger.warn("Nie można usunąć pliku tymczasowego eksportu {}: {}", spillFile, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.imagehub.imagehub.service;
+
+import com.imagehub.imagehub.model.PermissionConstants;
+import com.imagehub.imagehub.model.Role;
+import com.imagehub.imagehub.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static com.imagehub.imagehub.service.FolderPermissionTrieTest.permission;
+import static com.imagehub.imagehub.service.FolderPermissionTrieTest.trie;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reguły pobierania w {@link FolderAccessEvaluator#canDownload}
+ */
+class FolderAccessEvaluatorTest {
+
+    @Test
+    void readableFolderIsDownloadableUnlessExplicitlyDenied() {
+        FolderAccessEvaluator evaluator = evaluator(user("USER"), trie(
+                permission("A", true, false, false, true, false),
+                permission("B", true, false, false, false, false)));
+
+        assertTrue(evaluator.canDownload("A"));
+        assertTrue(evaluator.canRead("B"));
+        assertFalse(evaluator.canDownload("B"));
+    }
+
+    @Test
+    void downloadDenialAppliesOnlyToExactFolder() {
+        FolderAccessEvaluator evaluator = evaluator(user("USER"), trie(
+                permission("A", true, false, false, false, true)));
+
+        assertFalse(evaluator.canDownload("A"));
+        assertTrue(evaluator.canDownload("A/B"));
+    }
+
+    @Test
+    void inheritedDownloadRequiresIncludeSubfolders() {
+        FolderAccessEvaluator evaluator = evaluator(user("USER"), trie(
+                permission("A", false, false, false, true, true),
+                permission("X", false, false, false, true, false)));
+
+        assertTrue(evaluator.canDownload("A/B/C"));
+        assertTrue(evaluator.canDownload("X"));
+        assertFalse(evaluator.canDownload("X/Y"));
+    }
+
+    @Test
+    void rootGrantAllowsDownloadEverywhere() {
+        FolderAccessEvaluator evaluator = evaluator(user("USER"), trie(
+                permission("", true, false, false, true, true)));
+
+        assertTrue(evaluator.canDownload(""));
+        assertTrue(evaluator.canDownload("A/B"));
+    }
+
+    @Test
+    void siblingWithCommonPrefixIsNotDownloadable() {
+        FolderAccessEvaluator evaluator = evaluator(user("USER"), trie(
+                permission("A/B", true, false, false, true, true)));
+
+        assertTrue(evaluator.canDownload("A/B/C"));
+        assertFalse(evaluator.canDownload("A/Bc"));
+    }
+
+    @Test
+    void fallsBackToRolePermissions() {
+        assertTrue(evaluator(user("USER", PermissionConstants.FILES_DOWNLOAD), trie()).canDownload("A"));
+        assertTrue(evaluator(user("USER", PermissionConstants.FILES_READ), trie()).canDownload("A"));
+        assertFalse(evaluator(user("USER"), trie()).canDownload("A"));
+        assertTrue(evaluator(user("ADMIN"), trie()).canDownload("A"));
+    }
+
+    private static User user(String roleName, String... rolePermissions) {
+        return new User(1L, "jan", "secret1", "jan@example.com",
+                new Role(roleName, "", Set.of(rolePermissions), false));
+    }
+
+    private static FolderAccessEvaluator evaluator(User user, FolderPermissionTrie trie) {
+        return new FolderAccessEvaluator(user, trie, Set.of());
+    }
+}
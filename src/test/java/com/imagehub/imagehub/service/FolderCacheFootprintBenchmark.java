@@ -0,0 +1,106 @@
+package com.imagehub.imagehub.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Porównanie zajętości sterty przez wpisy cache'a folderów: dotychczasowe mapy
+ * (ConcurrentHashMap z opakowanymi wartościami i pełną ścieżką) kontra NextcloudResource.
+ *
+ * Uruchamiane ręcznie (nie jest testem JUnit), np.:
+ * <pre>
+ * java -Xmx2g -cp target/classes:target/test-classes com.imagehub.imagehub.service.FolderCacheFootprintBenchmark
+ * </pre>
+ */
+public class FolderCacheFootprintBenchmark {
+
+    private static final int ENTRIES = 100_000;
+    private static final int ENTRIES_PER_FOLDER = 50;
+    private static final String[] CONTENT_TYPES = {"image/jpeg", "image/png", "image/tiff", "text/plain"};
+
+    public static void main(String[] args) {
+        // Rozgrzewka, aby klasy i struktury JVM nie zaburzały pomiaru
+        buildMaps();
+        buildRecords();
+
+        long mapBytes = measure(FolderCacheFootprintBenchmark::buildMaps);
+        long recordBytes = measure(FolderCacheFootprintBenchmark::buildRecords);
+
+        System.out.printf("Map<String,Object>:  %,d B (%,d B na wpis)%n", mapBytes, mapBytes / ENTRIES);
+        System.out.printf("NextcloudResource:   %,d B (%,d B na wpis)%n", recordBytes, recordBytes / ENTRIES);
+        System.out.printf("Oszczędność na %,d wpisów: %,d B (%.1f%%)%n", ENTRIES, mapBytes - recordBytes,
+                100.0 * (mapBytes - recordBytes) / mapBytes);
+    }
+
+    private static long measure(Supplier<List<?>> builder) {
+        long before = usedHeap();
+        List<?> retained = builder.get();
+        long after = usedHeap();
+        if (retained.size() != ENTRIES) {
+            throw new IllegalStateException("Nieoczekiwana liczba wpisów: " + retained.size());
+        }
+        return after - before;
+    }
+
+    /**
+     * Wpisy w dotychczasowym formacie - każdy niesie własną pełną ścieżkę
+     */
+    private static List<?> buildMaps() {
+        List<Map<String, Object>> entries = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            String parentPath = folderPath(i);
+            String name = fileName(i);
+            Map<String, Object> resourceMap = new ConcurrentHashMap<>();
+            resourceMap.put("name", name);
+            resourceMap.put("isDirectory", false);
+            resourceMap.put("contentType", new String(CONTENT_TYPES[i % CONTENT_TYPES.length]));
+            resourceMap.put("path", parentPath + "/" + name);
+            resourceMap.put("lastModified", new Date(1_700_000_000_000L + i));
+            resourceMap.put("contentLength", 100_000L + i);
+            entries.add(resourceMap);
+        }
+        return entries;
+    }
+
+    /**
+     * Wpisy jako rekordy - ścieżka rodzica współdzielona w obrębie folderu, typ zawartości internowany
+     */
+    private static List<?> buildRecords() {
+        List<NextcloudResource> entries = new ArrayList<>(ENTRIES);
+        String parentPath = null;
+        for (int i = 0; i < ENTRIES; i++) {
+            if (i % ENTRIES_PER_FOLDER == 0) {
+                parentPath = folderPath(i);
+            }
+            entries.add(NextcloudResource.of(parentPath, fileName(i), false,
+                    new String(CONTENT_TYPES[i % CONTENT_TYPES.length]), 100_000L + i,
+                    new Date(1_700_000_000_000L + i)));
+        }
+        return entries;
+    }
+
+    private static String folderPath(int i) {
+        return "Katalog/Kolekcja_" + (i / 10_000) + "/Produkt_" + (i / ENTRIES_PER_FOLDER);
+    }
+
+    private static String fileName(int i) {
+        return "IMG_" + i + ".jpg";
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,215 @@
+package com.imagehub.imagehub.service;
+
+import com.imagehub.imagehub.model.FolderPermission;
+import com.imagehub.imagehub.model.Role;
+import com.imagehub.imagehub.model.User;
+import com.imagehub.imagehub.repository.FolderPermissionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.imagehub.imagehub.model.FolderPermission.PERMISSION_TYPE_CHILDREN_AS_PRODUCTS;
+import static com.imagehub.imagehub.model.FolderPermission.PERMISSION_TYPE_STANDARD;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Zmiana uprawnień przez {@link FolderPermissionService} jest widoczna w kolejnym sprawdzeniu
+ * mimo skompilowanych uprawnień w cache'u - poza transakcją, w transakcji, która ją wprowadziła,
+ * i po jej zatwierdzeniu
+ */
+class FolderPermissionServiceCacheTest {
+
+    private static final User USER = new User(1L, "jan", "secret1", "jan@example.com",
+            new Role("USER", "", Set.of(), false));
+
+    private AnnotationConfigApplicationContext context;
+    private FolderPermissionService service;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(TestConfig.class);
+        service = context.getBean(FolderPermissionService.class);
+        transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void seesPermissionChangesOutsideTransaction() {
+        assertFalse(service.canUserReadFolder(USER, "A/B"));
+        assertFalse(service.createEvaluator(USER).canRead("A/B"));
+
+        FolderPermission permission = grantRead("A");
+        assertTrue(service.canUserReadFolder(USER, "A/B"));
+        assertTrue(service.createEvaluator(USER).canRead("A/B"));
+
+        service.removePermission(permission.getId());
+        assertFalse(service.canUserReadFolder(USER, "A/B"));
+        assertFalse(service.createEvaluator(USER).canRead("A/B"));
+    }
+
+    @Test
+    void seesPermissionChangesInsideTransaction() {
+        assertFalse(service.canUserReadFolder(USER, "A/B"));
+
+        FolderPermission permission = transaction.execute(status -> {
+            assertFalse(service.canUserReadFolder(USER, "A/B"));
+            FolderPermission granted = grantRead("A");
+            assertTrue(service.canUserReadFolder(USER, "A/B"));
+            assertTrue(service.createEvaluator(USER).canRead("A/B"));
+            return granted;
+        });
+        assertTrue(service.canUserReadFolder(USER, "A/B"));
+        assertTrue(service.createEvaluator(USER).canRead("A/B"));
+
+        transaction.executeWithoutResult(status -> {
+            assertTrue(service.canUserReadFolder(USER, "A/B"));
+            service.removePermission(permission.getId());
+            assertFalse(service.canUserReadFolder(USER, "A/B"));
+            assertFalse(service.createEvaluator(USER).canRead("A/B"));
+        });
+        assertFalse(service.canUserReadFolder(USER, "A/B"));
+        assertFalse(service.createEvaluator(USER).canRead("A/B"));
+    }
+
+    @Test
+    void seesProductFolderChanges() {
+        assertFalse(service.createEvaluator(USER).hasChildrenAsProducts("Produkty"));
+
+        transaction.executeWithoutResult(status -> {
+            service.setPermissionWithType("Produkty", USER, true, false, false, true, false,
+                    PERMISSION_TYPE_CHILDREN_AS_PRODUCTS);
+            assertTrue(service.createEvaluator(USER).hasChildrenAsProducts("Produkty"));
+        });
+        assertTrue(service.createEvaluator(USER).hasChildrenAsProducts("Produkty"));
+        assertTrue(service.isProductFolder("Produkty/Krzesło"));
+    }
+
+    private FolderPermission grantRead(String folderPath) {
+        return service.setPermissionWithType(folderPath, USER, true, false, false, true, true,
+                PERMISSION_TYPE_STANDARD);
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class TestConfig {
+
+        @Bean
+        FolderPermissionRepository folderPermissionRepository() {
+            return inMemoryRepository();
+        }
+
+        @Bean
+        FolderPermissionService folderPermissionService(FolderPermissionRepository repository,
+                                                        ApplicationEventPublisher eventPublisher) {
+            return new FolderPermissionService(repository, eventPublisher);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new NoOpTransactionManager();
+        }
+    }
+
+    /**
+     * Repozytorium w pamięci - obsługuje tylko metody używane przez FolderPermissionService
+     */
+    private static FolderPermissionRepository inMemoryRepository() {
+        Map<Long, FolderPermission> store = new ConcurrentHashMap<>();
+        AtomicLong ids = new AtomicLong();
+        FolderPermissionRepository repository = mock(FolderPermissionRepository.class);
+
+        when(repository.findByUser(any())).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            return store.values().stream()
+                    .filter(permission -> Objects.equals(permission.getUser().getId(), user.getId()))
+                    .toList();
+        });
+        when(repository.findByFolderPathAndUser(anyString(), any())).thenAnswer(invocation -> {
+            String folderPath = invocation.getArgument(0);
+            User user = invocation.getArgument(1);
+            return store.values().stream()
+                    .filter(permission -> permission.getFolderPath().equals(folderPath)
+                            && Objects.equals(permission.getUser().getId(), user.getId()))
+                    .findFirst();
+        });
+        when(repository.findByPermissionType(anyString())).thenAnswer(invocation -> {
+            String permissionType = invocation.getArgument(0);
+            return store.values().stream()
+                    .filter(permission -> permission.getPermissionType().equals(permissionType))
+                    .toList();
+        });
+        when(repository.findById(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(store.get(invocation.<Long>getArgument(0))));
+        when(repository.save(any(FolderPermission.class))).thenAnswer(invocation -> {
+            FolderPermission permission = invocation.getArgument(0);
+            if (permission.getId() == null) {
+                permission.setId(ids.incrementAndGet());
+            }
+            store.put(permission.getId(), permission);
+            return permission;
+        });
+        doAnswer(invocation -> store.remove(invocation.<Long>getArgument(0)))
+                .when(repository).deleteById(anyLong());
+        return repository;
+    }
+
+    /**
+     * Menedżer transakcji bez zasobów - wystarcza do synchronizacji transakcji
+     * i zdarzeń @TransactionalEventListener
+     */
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        // Metody @Transactional wywołane w transakcji uczestniczą w niej zamiast ją zawieszać
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return TransactionSynchronizationManager.isActualTransactionActive();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
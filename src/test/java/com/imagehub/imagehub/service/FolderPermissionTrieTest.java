@@ -0,0 +1,91 @@
+package com.imagehub.imagehub.service;
+
+import com.imagehub.imagehub.model.FolderPermission;
+import com.imagehub.imagehub.model.Role;
+import com.imagehub.imagehub.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reguły dziedziczenia uprawnień w {@link FolderPermissionTrie} - odpowiadają dawnym zapytaniom
+ * LIKE w FolderPermissionRepository
+ */
+class FolderPermissionTrieTest {
+
+    private static final User USER = new User(1L, "jan", "secret1", "jan@example.com",
+            new Role("USER", "", Set.of(), false));
+
+    @Test
+    void allowsExactPathOnly() {
+        FolderPermissionTrie trie = trie(permission("A/B", true, false, false, true, false));
+
+        assertTrue(trie.allows("A/B", FolderPermissionTrie.READ));
+        assertFalse(trie.allows("A/B/C", FolderPermissionTrie.READ));
+        assertFalse(trie.allows("A", FolderPermissionTrie.READ));
+        assertFalse(trie.allows("A/B", FolderPermissionTrie.WRITE));
+    }
+
+    @Test
+    void inheritsOnlyWithIncludeSubfolders() {
+        FolderPermissionTrie trie = trie(
+                permission("A", true, true, false, true, true),
+                permission("X", true, true, false, true, false));
+
+        assertTrue(trie.allows("A", FolderPermissionTrie.WRITE));
+        assertTrue(trie.allows("A/B", FolderPermissionTrie.READ));
+        assertTrue(trie.allows("A/B/C", FolderPermissionTrie.WRITE));
+        assertFalse(trie.allows("A/B/C", FolderPermissionTrie.DELETE));
+
+        assertTrue(trie.allows("X", FolderPermissionTrie.READ));
+        assertFalse(trie.allows("X/Y", FolderPermissionTrie.READ));
+    }
+
+    @Test
+    void rootGrantCoversWholeTreeWithIncludeSubfolders() {
+        FolderPermissionTrie inherited = trie(permission("", true, false, false, true, true));
+        assertTrue(inherited.allows("", FolderPermissionTrie.READ));
+        assertTrue(inherited.allows("A", FolderPermissionTrie.READ));
+        assertTrue(inherited.allows("A/B/C", FolderPermissionTrie.READ));
+
+        FolderPermissionTrie exact = trie(permission("", true, false, false, true, false));
+        assertTrue(exact.allows("", FolderPermissionTrie.READ));
+        assertFalse(exact.allows("A", FolderPermissionTrie.READ));
+    }
+
+    @Test
+    void doesNotMatchSiblingWithCommonPrefix() {
+        FolderPermissionTrie trie = trie(permission("A/B", true, true, true, true, true));
+
+        assertTrue(trie.allows("A/B/C", FolderPermissionTrie.READ));
+        assertFalse(trie.allows("A/Bc", FolderPermissionTrie.READ));
+        assertFalse(trie.allows("A/Bc/D", FolderPermissionTrie.READ));
+        assertFalse(trie.deniesDirectly("A/Bc", FolderPermissionTrie.DOWNLOAD));
+    }
+
+    @Test
+    void deniesDirectlyOnlyForExactGrantWithoutFlag() {
+        FolderPermissionTrie trie = trie(
+                permission("A", true, false, false, false, true),
+                permission("A/B/C", true, false, false, true, false));
+
+        assertTrue(trie.deniesDirectly("A", FolderPermissionTrie.DOWNLOAD));
+        // Wyłączenie pobierania nie jest dziedziczone przez podfoldery
+        assertFalse(trie.deniesDirectly("A/B", FolderPermissionTrie.DOWNLOAD));
+        assertFalse(trie.deniesDirectly("A/B/C", FolderPermissionTrie.DOWNLOAD));
+        assertFalse(trie.deniesDirectly("Z", FolderPermissionTrie.DOWNLOAD));
+    }
+
+    static FolderPermission permission(String folderPath, boolean canRead, boolean canWrite, boolean canDelete,
+                                       boolean canDownload, boolean includeSubfolders) {
+        return new FolderPermission(folderPath, USER, canRead, canWrite, canDelete, canDownload, includeSubfolders);
+    }
+
+    static FolderPermissionTrie trie(FolderPermission... permissions) {
+        return new FolderPermissionTrie(List.of(permissions));
+    }
+}
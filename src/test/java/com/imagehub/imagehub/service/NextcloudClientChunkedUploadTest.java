@@ -0,0 +1,276 @@
+package com.imagehub.imagehub.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Upload fragmentami (chunked upload v2) wobec serwera WebDAV działającego w procesie testu -
+ * serwer sprawdza nagłówki i numerację fragmentów tak jak Nextcloud i składa plik przy MOVE.
+ */
+class NextcloudClientChunkedUploadTest {
+
+    private static final String USER = "imagehub";
+    private static final String FILES_PREFIX = "/remote.php/dav/files/" + USER + "/";
+    private static final String UPLOADS_PREFIX = "/remote.php/dav/uploads/" + USER + "/";
+
+    private WebDavStandIn server;
+    private NextcloudClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new WebDavStandIn();
+        client = new NextcloudClient(server.url(), USER, "secret");
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void uploadsChunksAndAssemblesFile() throws IOException {
+        byte[] data = randomBytes(2500);
+
+        client.uploadFileChunked("Produkty/Nowy folder/zdjęcie 1.jpg", new ByteArrayInputStream(data),
+                data.length, 1000, 2);
+
+        assertArrayEquals(data, server.files.get(FILES_PREFIX + "Produkty/Nowy folder/zdjęcie 1.jpg"));
+        assertEquals("MKCOL", server.methods().get(0));
+        assertEquals(List.of("PUT 1", "PUT 2", "PUT 3"), server.chunkPuts());
+        assertEquals("MOVE", server.methods().get(server.methods().size() - 1));
+        assertFalse(server.methods().contains("DELETE"));
+        assertTrue(server.uploads.isEmpty());
+    }
+
+    @Test
+    void doesNotSendEmptyChunkWhenLengthIsMultipleOfChunkSize() throws IOException {
+        byte[] data = randomBytes(3000);
+
+        client.uploadFileChunked("Produkty/plik.tif", new ByteArrayInputStream(data), data.length, 1000, 3);
+
+        assertArrayEquals(data, server.files.get(FILES_PREFIX + "Produkty/plik.tif"));
+        assertEquals(List.of("PUT 1", "PUT 2", "PUT 3"), server.chunkPuts());
+    }
+
+    @Test
+    void abortsUploadWhenChunkFails() {
+        byte[] data = randomBytes(4500);
+        server.failingChunk = 2;
+
+        assertThrows(IOException.class, () -> client.uploadFileChunked("Produkty/plik.tif",
+                new ByteArrayInputStream(data), data.length, 1000, 1));
+
+        assertEquals("DELETE", server.methods().get(server.methods().size() - 1));
+        assertFalse(server.methods().contains("MOVE"));
+        assertTrue(server.files.isEmpty());
+        assertTrue(server.uploads.isEmpty());
+    }
+
+    @Test
+    void abortsUploadWhenAssemblyFails() {
+        byte[] data = randomBytes(2500);
+
+        // Zadeklarowana długość nie zgadza się z wysłanymi fragmentami - serwer odrzuca MOVE
+        assertThrows(IOException.class, () -> client.uploadFileChunked("Produkty/plik.tif",
+                new ByteArrayInputStream(data), data.length + 1, 1000, 2));
+
+        assertEquals("DELETE", server.methods().get(server.methods().size() - 1));
+        assertTrue(server.files.isEmpty());
+        assertTrue(server.uploads.isEmpty());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Minimalny serwer WebDAV obsługujący protokół chunked upload v2: MKCOL katalogu uploadu,
+     * PUT fragmentów 1..N, MOVE /.file składające plik oraz DELETE przerywające upload
+     */
+    private static final class WebDavStandIn {
+        private final HttpServer httpServer;
+        private final List<String> requests = new ArrayList<>();
+        // Katalogi uploadów: id -> cel (z nagłówka Destination przy MKCOL) i fragmenty według numeru
+        private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+        private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+        private volatile int failingChunk = -1;
+
+        private WebDavStandIn() throws IOException {
+            httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            httpServer.createContext("/", this::handle);
+            httpServer.start();
+        }
+
+        private String url() {
+            return "http://127.0.0.1:" + httpServer.getAddress().getPort();
+        }
+
+        private void stop() {
+            httpServer.stop(0);
+        }
+
+        private List<String> methods() {
+            synchronized (requests) {
+                return requests.stream().map(request -> request.split(" ")[0]).collect(Collectors.toList());
+            }
+        }
+
+        /**
+         * Wysłane fragmenty według numeru (kolejność wysyłania równoległego jest dowolna)
+         */
+        private List<String> chunkPuts() {
+            synchronized (requests) {
+                return requests.stream()
+                        .filter(request -> request.startsWith("PUT "))
+                        .map(request -> "PUT " + request.substring(request.lastIndexOf('/') + 1))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = readBody(exchange.getRequestBody());
+            synchronized (requests) {
+                requests.add(exchange.getRequestMethod() + " " + path);
+            }
+
+            int status;
+            if (exchange.getRequestHeaders().getFirst("Authorization") == null) {
+                status = 401;
+            } else if (!path.startsWith(UPLOADS_PREFIX)) {
+                status = 404;
+            } else {
+                String[] segments = path.substring(UPLOADS_PREFIX.length()).split("/");
+                status = switch (exchange.getRequestMethod()) {
+                    case "MKCOL" -> mkcol(exchange, segments);
+                    case "PUT" -> put(exchange, segments, body);
+                    case "MOVE" -> move(exchange, segments);
+                    case "DELETE" -> delete(segments);
+                    default -> 405;
+                };
+            }
+
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        }
+
+        private int mkcol(HttpExchange exchange, String[] segments) {
+            String destination = destination(exchange);
+            if (segments.length != 1 || destination == null) {
+                return 400;
+            }
+            return uploads.putIfAbsent(segments[0], new Upload(destination)) == null ? 201 : 405;
+        }
+
+        private int put(HttpExchange exchange, String[] segments, byte[] body) {
+            Upload upload = segments.length == 2 ? uploads.get(segments[0]) : null;
+            if (upload == null) {
+                return 404;
+            }
+            if (!segments[1].matches("[1-9][0-9]{0,4}") || Integer.parseInt(segments[1]) > 10000
+                    || !upload.destination.equals(destination(exchange))) {
+                return 400;
+            }
+
+            int number = Integer.parseInt(segments[1]);
+            if (number == failingChunk) {
+                return 500;
+            }
+            upload.chunks.put(number, body);
+            return 201;
+        }
+
+        private int move(HttpExchange exchange, String[] segments) {
+            Upload upload = segments.length == 2 && segments[1].equals(".file") ? uploads.get(segments[0]) : null;
+            if (upload == null) {
+                return 404;
+            }
+            String totalLength = exchange.getRequestHeaders().getFirst("OC-Total-Length");
+            if (!upload.destination.equals(destination(exchange))
+                    || !"T".equals(exchange.getRequestHeaders().getFirst("Overwrite"))
+                    || totalLength == null) {
+                return 400;
+            }
+
+            // Fragmenty muszą tworzyć ciągłą numerację 1..N, a złożony plik mieć zadeklarowaną długość
+            Map<Integer, byte[]> chunks = new TreeMap<>(upload.chunks);
+            if (!chunks.keySet().equals(numbers(chunks.size()))) {
+                return 400;
+            }
+            ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+            chunks.values().forEach(assembled::writeBytes);
+            if (assembled.size() != Long.parseLong(totalLength)) {
+                return 400;
+            }
+
+            files.put(upload.destination, assembled.toByteArray());
+            uploads.remove(segments[0]);
+            return 201;
+        }
+
+        private int delete(String[] segments) {
+            return segments.length == 1 && uploads.remove(segments[0]) != null ? 204 : 404;
+        }
+
+        /**
+         * Zdekodowana ścieżka z nagłówka Destination lub null, jeśli nie wskazuje na plik użytkownika
+         */
+        private String destination(HttpExchange exchange) {
+            String header = exchange.getRequestHeaders().getFirst("Destination");
+            if (header == null) {
+                return null;
+            }
+            String path = URI.create(header).getPath();
+            return path.startsWith(FILES_PREFIX) && path.length() > FILES_PREFIX.length() ? path : null;
+        }
+
+        private static Set<Integer> numbers(int count) {
+            Set<Integer> numbers = new HashSet<>();
+            for (int i = 1; i <= count; i++) {
+                numbers.add(i);
+            }
+            return numbers;
+        }
+
+        private static byte[] readBody(InputStream in) throws IOException {
+            try (in) {
+                return in.readAllBytes();
+            }
+        }
+
+        private record Upload(String destination, Map<Integer, byte[]> chunks) {
+            private Upload(String destination) {
+                this(destination, new ConcurrentHashMap<>());
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.imagehub.imagehub.service;
+
+import com.imagehub.imagehub.config.NextcloudProperties;
+import com.imagehub.imagehub.model.Role;
+import com.imagehub.imagehub.model.UploadSession;
+import com.imagehub.imagehub.model.User;
+import com.imagehub.imagehub.repository.UploadSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stan sesji zwracany po wysłaniu fragmentu. Test działa w jednym kontekście utrwalania (jak żądanie
+ * z open-in-view), więc sesja wczytana przed zapisem fragmentu nie może trafić do odpowiedzi.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:uploads;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class ResumableUploadServiceTest {
+
+    private static final long CHUNK_SIZE = 5L * 1024 * 1024;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    private ResumableUploadService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        Role role = entityManager.persist(new Role("USER", "", Set.of(), false));
+        user = entityManager.persist(new User(null, "jan", "secret1", "jan@example.com", role));
+
+        FolderPermissionService folderPermissionService = mock(FolderPermissionService.class);
+        when(folderPermissionService.canUserWriteFolder(any(), anyString())).thenReturn(true);
+        NextcloudProperties properties = new NextcloudProperties();
+        properties.getUpload().setResumableChunkSizeMb(5);
+
+        service = new ResumableUploadService(uploadSessionRepository, mock(NextcloudClient.class),
+                mock(NextcloudService.class), folderPermissionService, properties);
+    }
+
+    @Test
+    void chunkResponseDoesNotListUploadedChunkAsMissing() throws IOException {
+        UploadSession session = service.createSession("Produkty/plik.tif", 2 * CHUNK_SIZE + 100, "image/tiff", user);
+        // Sesja trafia do kontekstu utrwalania przed wysłaniem fragmentów, jak przy GET stanu sesji
+        service.getSession(session.getId(), user);
+
+        Map<String, Object> first = service.toMap(
+                service.uploadChunk(session.getId(), 1, InputStream.nullInputStream(), CHUNK_SIZE, user));
+        assertEquals(1, first.get("receivedChunks"));
+        assertEquals(List.of(0, 2), first.get("missingChunks"));
+
+        Map<String, Object> second = service.toMap(
+                service.uploadChunk(session.getId(), 2, InputStream.nullInputStream(), 100, user));
+        assertEquals(2, second.get("receivedChunks"));
+        assertEquals(List.of(0), second.get("missingChunks"));
+    }
+}
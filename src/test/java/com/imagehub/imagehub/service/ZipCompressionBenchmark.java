@@ -0,0 +1,123 @@
+package com.imagehub.imagehub.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Przepustowość tworzenia archiwum ZIP dla typowego folderu produktu: wszystko metodą DEFLATE
+ * kontra polityka {@link ZipCompressionPolicy} (STORED dla formatów już skompresowanych).
+ *
+ * Uruchamiane ręcznie (nie jest testem JUnit), np.:
+ * <pre>
+ * java -cp target/classes:target/test-classes com.imagehub.imagehub.service.ZipCompressionBenchmark
+ * </pre>
+ */
+public class ZipCompressionBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        List<SampleFile> folder = productFolder();
+        long totalBytes = folder.stream().mapToLong(file -> file.data().length).sum();
+        System.out.printf("Folder: %d plików, %.1f MB%n", folder.size(), totalBytes / 1_048_576.0);
+
+        // Rozgrzewka JIT
+        writeZip(folder, false);
+        writeZip(folder, true);
+
+        report("DEFLATE (wszystko)", folder, false, totalBytes);
+        report("Polityka STORED/DEFLATE", folder, true, totalBytes);
+    }
+
+    private static void report(String label, List<SampleFile> folder, boolean usePolicy, long totalBytes)
+            throws IOException {
+        long bestNanos = Long.MAX_VALUE;
+        long archiveSize = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            archiveSize = writeZip(folder, usePolicy);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        System.out.printf("%-26s %7.1f ms  %7.1f MB/s  archiwum %.1f MB%n", label, bestNanos / 1e6,
+                totalBytes / 1_048_576.0 / (bestNanos / 1e9), archiveSize / 1_048_576.0);
+    }
+
+    /**
+     * Zapisz archiwum tak jak ZipExportWriter - CRC liczone przyrostowo przy "pobieraniu" pliku
+     */
+    private static long writeZip(List<SampleFile> folder, boolean usePolicy) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            for (SampleFile file : folder) {
+                ZipEntry entry = new ZipEntry("Produkt/" + file.name());
+                if (usePolicy && ZipCompressionPolicy.shouldStore(file.name(), file.contentType())) {
+                    CRC32 crc = new CRC32();
+                    for (int offset = 0; offset < file.data().length; offset += 64 * 1024) {
+                        crc.update(file.data(), offset, Math.min(64 * 1024, file.data().length - offset));
+                    }
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(file.data().length);
+                    entry.setCompressedSize(file.data().length);
+                    entry.setCrc(crc.getValue());
+                }
+                zos.putNextEntry(entry);
+                zos.write(file.data());
+                zos.closeEntry();
+            }
+        }
+        return out.count;
+    }
+
+    /**
+     * Typowy folder produktu: zdjęcia JPEG, kilka PNG oraz pliki informacyjne.
+     * Treść JPEG/PNG to dane o wysokiej entropii, tak jak skompresowane obrazy.
+     */
+    private static List<SampleFile> productFolder() {
+        Random random = new Random(42);
+        List<SampleFile> files = new ArrayList<>();
+        for (int i = 1; i <= 24; i++) {
+            files.add(new SampleFile("IMG_" + i + ".jpg", "image/jpeg", randomBytes(random, 2_500_000 + random.nextInt(1_500_000))));
+        }
+        for (int i = 1; i <= 4; i++) {
+            files.add(new SampleFile("Detail_" + i + ".png", "image/png", randomBytes(random, 1_500_000)));
+        }
+        StringBuilder info = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            info.append("SKU: PRD-").append(1000 + i).append("\nName: Produkt testowy ").append(i).append('\n');
+        }
+        files.add(new SampleFile("info.txt", "text/plain", info.toString().getBytes(StandardCharsets.UTF_8)));
+        files.add(new SampleFile("metadata.xml", "application/xml",
+                ("<product>" + info + "</product>").getBytes(StandardCharsets.UTF_8)));
+        return files;
+    }
+
+    private static byte[] randomBytes(Random random, int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private record SampleFile(String name, String contentType, byte[] data) {
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}